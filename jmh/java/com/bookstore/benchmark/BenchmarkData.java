@@ -0,0 +1,97 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.model.Author;
+import com.bookstore.model.Book;
+import com.bookstore.model.CartItem;
+import com.bookstore.model.Customer;
+import com.bookstore.service.DataService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data set shared by the threads of a benchmark
+ * A fresh, unpersisted DataService filled with a catalog of books (20 per
+ * author) and customers with a number of placed orders each. Stock is large
+ * enough that no benchmark runs out
+ */
+@State(Scope.Benchmark)
+public class BenchmarkData {
+    // Books written by each author
+    private static final int BOOKS_PER_AUTHOR = 20;
+
+    // Stock of every book
+    private static final int STOCK = 1_000_000_000;
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"1000", "10000"})
+    public int customerCount;
+
+    @Param({"10"})
+    public int ordersPerCustomer;
+
+    DataService service;
+    long[] bookIds;
+    long[] authorIds;
+    long[] customerIds;
+
+    // Order IDs of each customer, by customer index
+    long[][] orderIds;
+
+    // Makes the email of every created customer unique
+    final AtomicLong emails = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("bookstore.sampleData", "false");
+        service = DataService.createUnpersisted();
+
+        authorIds = new long[Math.max(1, catalogSize / BOOKS_PER_AUTHOR)];
+        for (int i = 0; i < authorIds.length; i++) {
+            authorIds[i] = service.createAuthor(new Author(null, "Author " + i, "Biography of author " + i)).getId();
+        }
+
+        bookIds = new long[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            Book book = new Book(null, "Book title " + i, authorIds[i % authorIds.length], isbn(i),
+                    1900 + i % 120, 5 + i % 50, STOCK);
+            bookIds[i] = service.createBook(book).getId();
+        }
+
+        customerIds = new long[customerCount];
+        orderIds = new long[customerCount][ordersPerCustomer];
+        for (int i = 0; i < customerCount; i++) {
+            customerIds[i] = createCustomer().getId();
+            for (int j = 0; j < ordersPerCustomer; j++) {
+                service.addCartItem(customerIds[i], new CartItem(bookIds[(i + j) % catalogSize], 1));
+                orderIds[i][j] = service.createOrder(customerIds[i]).getId();
+            }
+        }
+    }
+
+    /**
+     * Create a customer with a unique email
+     *
+     * @return The created customer
+     */
+    Customer createCustomer() {
+        long n = emails.incrementAndGet();
+        return service.createCustomer(new Customer(null, "Customer " + n, "customer" + n + "@example.com", "secret"));
+    }
+
+    // A valid, unique ISBN-13 for a book index
+    private static String isbn(int index) {
+        String digits = String.format("978%09d", index);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,61 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.config.Settings;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the benchmarks once per thread count and writes JMH's JSON results
+ * Each run writes benchmarks-threads-N.json to the results directory, with
+ * the score, error and parameters of every benchmark, for tracking
+ * regressions between builds
+ *
+ * Configured by bookstore.benchmark.threads (comma-separated thread counts,
+ * default 1,4,16) and bookstore.benchmark.results (default
+ * benchmark-results). The optional argument is a regular expression
+ * selecting benchmarks, such as DataServiceBenchmark.getAllBooks
+ *
+ * The jmh module compiles the benchmarks with JMH's annotation processor and
+ * packages them with everything they need into target/benchmarks.jar, so
+ * from the repository root:
+ *
+ * <pre>
+ * mvn -B package
+ * java -Dbookstore.benchmark.threads=1,4 -jar jmh/target/benchmarks.jar [regex]
+ * </pre>
+ *
+ * The same jar also runs org.openjdk.jmh.Main, for JMH's own options
+ * (java -cp jmh/target/benchmarks.jar org.openjdk.jmh.Main -h)
+ */
+public final class BenchmarkRunner {
+    private static final String THREADS_SETTING = "bookstore.benchmark.threads";
+    private static final String RESULTS_SETTING = "bookstore.benchmark.results";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        String include = args.length > 0 ? args[0] : DataServiceBenchmark.class.getSimpleName();
+        Path results = Paths.get(Settings.getString(RESULTS_SETTING, "benchmark-results"));
+        Files.createDirectories(results);
+
+        for (String count : Settings.getString(THREADS_SETTING, "1,4,16").split(",")) {
+            int threads = Integer.parseInt(count.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(results.resolve("benchmarks-threads-" + threads + ".json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bookstore.benchmark;
+
+import com.bookstore.model.Book;
+import com.bookstore.model.Cart;
+import com.bookstore.model.CartItem;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the DataService hot paths
+ * Reads pick a random author, customer or order on each call; writes use a
+ * customer of the benchmark thread's own, so threads only contend where the
+ * service itself makes them. The thread count is set per run, see
+ * BenchmarkRunner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataServiceBenchmark {
+    // Distinct books a shopper cycles through, which bounds the size of their cart
+    private static final int CART_BOOKS = 8;
+
+    /**
+     * A benchmark thread's own customer
+     */
+    @State(Scope.Thread)
+    public static class Shopper {
+        long customerId;
+        long[] bookIds;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(BenchmarkData data) {
+            customerId = data.createCustomer().getId();
+            bookIds = new long[CART_BOOKS];
+            for (int i = 0; i < CART_BOOKS; i++) {
+                bookIds[i] = data.bookIds[ThreadLocalRandom.current().nextInt(data.bookIds.length)];
+            }
+        }
+
+        long nextBookId() {
+            next = (next + 1) % CART_BOOKS;
+            return bookIds[next];
+        }
+    }
+
+    @Benchmark
+    public List<Book> getAllBooks(BenchmarkData data) {
+        return data.service.getAllBooks();
+    }
+
+    @Benchmark
+    public List<Book> getBooksByAuthor(BenchmarkData data) {
+        long authorId = data.authorIds[ThreadLocalRandom.current().nextInt(data.authorIds.length)];
+        return data.service.getBooksByAuthor(authorId);
+    }
+
+    // Includes the email uniqueness check
+    @Benchmark
+    public Customer createCustomer(BenchmarkData data) {
+        return data.createCustomer();
+    }
+
+    @Benchmark
+    public Order getCustomerOrder(BenchmarkData data) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int customer = random.nextInt(data.customerIds.length);
+        long[] orderIds = data.orderIds[customer];
+        return data.service.getCustomerOrder(data.customerIds[customer], orderIds[random.nextInt(orderIds.length)]);
+    }
+
+    @Benchmark
+    public Cart addCartItem(BenchmarkData data, Shopper shopper) {
+        return data.service.addCartItem(shopper.customerId, new CartItem(shopper.nextBookId(), 1));
+    }
+
+    // A checkout needs a non-empty cart, so each call adds one item and then places the order
+    @Benchmark
+    public Order createOrder(BenchmarkData data, Shopper shopper) {
+        data.service.addCartItem(shopper.customerId, new CartItem(shopper.nextBookId(), 1));
+        return data.service.createOrder(shopper.customerId);
+    }
+}
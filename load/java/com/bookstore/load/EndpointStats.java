@@ -0,0 +1,48 @@
+package com.bookstore.load;
+
+import com.bookstore.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the measured requests to one endpoint
+ * Latencies run from the time a request was scheduled to be sent, not from
+ * when it actually went out, so a stalled server is charged for the
+ * requests that queued up behind it
+ */
+final class EndpointStats {
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Record a completed request
+     *
+     * @param nanos Time from the scheduled send to completion
+     * @param success Whether the response had a 2xx status
+     */
+    void record(long nanos, boolean success) {
+        latencies.record(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    long getCount() {
+        return latencies.getCount();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    long getMaxMicros() {
+        return maxNanos.get() / 1000;
+    }
+
+    long percentileMicros(double percentile) {
+        return latencies.percentileMicros(percentile);
+    }
+}
@@ -0,0 +1,355 @@
+package com.bookstore.load;
+
+import com.bookstore.ApplicationConfig;
+import com.bookstore.config.Settings;
+import com.bookstore.model.Author;
+import com.bookstore.model.Book;
+import com.bookstore.model.Customer;
+import com.bookstore.service.DataService;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpHandlerRegistration;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import javax.ws.rs.ext.RuntimeDelegate;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load harness for the storefront endpoints
+ * Fills the shared DataService with a synthetic catalog, serves the
+ * application in-process on localhost through a Grizzly HTTP server, and
+ * drives it with a weighted mix of operations over HTTP, so serialization,
+ * providers and filters are all on the measured path. Serving needs a JAX-RS
+ * implementation that provides Grizzly HttpHandler endpoints with support for
+ * asynchronous responses, such as Jersey's grizzly2-http container (Jersey's
+ * jdk-http container can't suspend requests, so the asynchronous resources
+ * fail on it); the load module depends on it, so from the repository root:
+ *
+ * <pre>
+ * mvn -B install
+ * mvn -B -pl load exec:java -Dbookstore.load.rate=500
+ * </pre>
+ *
+ * Requests are sent open-loop at a fixed rate, and each latency is measured
+ * from the time the request was scheduled, which corrects for coordinated
+ * omission: when the server stalls, the requests that should have been sent
+ * meanwhile are charged for the wait. A checkout adds one item to the cart
+ * and then places the order; the add is counted under the cart endpoint.
+ * Checkouts in flight at the same time are for different customers, so none
+ * finds its cart emptied by another
+ *
+ * Configured by bookstore.load.mix (weights per operation, default
+ * books=40,author_books=35,cart=20,checkout=5), bookstore.load.rate
+ * (requests per second, default 500), bookstore.load.warmupSec (default 10),
+ * bookstore.load.durationSec (default 30), bookstore.load.books (default
+ * 10000), bookstore.load.customers (default 1000), bookstore.load.pageSize
+ * (books per browsed page, default 20), bookstore.load.port (default 0, any
+ * free port), bookstore.load.serverThreads (default 32) and
+ * bookstore.load.timeoutSec (default 10). Persistence and the sample data
+ * are always off
+ */
+public final class LoadHarness {
+    private static final String MIX_SETTING = "bookstore.load.mix";
+    private static final String RATE_SETTING = "bookstore.load.rate";
+    private static final String WARMUP_SETTING = "bookstore.load.warmupSec";
+    private static final String DURATION_SETTING = "bookstore.load.durationSec";
+    private static final String BOOKS_SETTING = "bookstore.load.books";
+    private static final String CUSTOMERS_SETTING = "bookstore.load.customers";
+    private static final String PAGE_SIZE_SETTING = "bookstore.load.pageSize";
+    private static final String PORT_SETTING = "bookstore.load.port";
+    private static final String SERVER_THREADS_SETTING = "bookstore.load.serverThreads";
+    private static final String TIMEOUT_SETTING = "bookstore.load.timeoutSec";
+
+    // Books written by each author
+    private static final int BOOKS_PER_AUTHOR = 20;
+
+    // Stock of every book
+    private static final int STOCK = 1_000_000_000;
+
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final int pageSize;
+    private final Duration timeout;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+
+    // Counts the requests in flight, so the run can wait for the last of them
+    private final Phaser inFlight = new Phaser(1);
+
+    // Customers with no checkout in flight
+    private final Queue<Long> idleCustomers = new ConcurrentLinkedQueue<>();
+
+    private HttpClient client;
+    private String baseUri;
+    private long[] authorIds;
+    private long[] bookIds;
+    private long[] customerIds;
+
+    private LoadHarness(Map<Operation, Integer> mix, int pageSize, Duration timeout) {
+        operations = new Operation[mix.size()];
+        cumulativeWeights = new int[mix.size()];
+        int i = 0;
+        int total = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            total += entry.getValue();
+            operations[i] = entry.getKey();
+            cumulativeWeights[i++] = total;
+            stats.put(entry.getKey(), new EndpointStats());
+        }
+        // A checkout also adds to the cart
+        if (mix.containsKey(Operation.CHECKOUT)) {
+            stats.putIfAbsent(Operation.CART, new EndpointStats());
+        }
+        this.pageSize = pageSize;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // Blank disables persistence, even when the environment sets a data directory
+        System.setProperty("bookstore.data.dir", "");
+        System.setProperty("bookstore.sampleData", "false");
+
+        LoadHarness harness = new LoadHarness(parseMix(Settings.getString(MIX_SETTING,
+                "books=40,author_books=35,cart=20,checkout=5")), Settings.getInt(PAGE_SIZE_SETTING, 20),
+                Duration.ofSeconds(Settings.getInt(TIMEOUT_SETTING, 10)));
+        harness.createData(Settings.getInt(BOOKS_SETTING, 10_000), Settings.getInt(CUSTOMERS_SETTING, 1000));
+
+        // The resources complete asynchronously, so the container must support suspended requests
+        int serverThreads = Settings.getInt(SERVER_THREADS_SETTING, 32);
+        NetworkListener listener = new NetworkListener("load",
+                InetAddress.getLoopbackAddress().getHostAddress(), Settings.getInt(PORT_SETTING, 0));
+        listener.getTransport().setTcpNoDelay(true);
+        listener.getTransport().setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig()
+                .setPoolName("load-server")
+                .setCorePoolSize(serverThreads)
+                .setMaxPoolSize(serverThreads)
+                .setDaemon(true));
+        HttpServer server = new HttpServer();
+        server.addListener(listener);
+        server.getServerConfiguration().addHttpHandler(
+                RuntimeDelegate.getInstance().createEndpoint(new ApplicationConfig(), HttpHandler.class),
+                HttpHandlerRegistration.builder().contextPath("/api").build());
+        server.start();
+        try {
+            harness.baseUri = "http://" + listener.getHost() + ":" + listener.getPort() + "/api";
+            harness.client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(harness.timeout)
+                    .build();
+            int warmupSec = Settings.getInt(WARMUP_SETTING, 10);
+            int durationSec = Math.max(1, Settings.getInt(DURATION_SETTING, 30));
+            harness.run(Math.max(1, Settings.getInt(RATE_SETTING, 500)), warmupSec, durationSec);
+            harness.report(durationSec);
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    // Parse "name=weight,..." into the operations with a positive weight
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            int separator = part.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed workload mix entry: " + part);
+            }
+            int weight = Integer.parseInt(part.substring(separator + 1).trim());
+            if (weight > 0) {
+                weights.merge(Operation.of(part.substring(0, separator)), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The workload mix has no operations: " + mix);
+        }
+        return weights;
+    }
+
+    // Fill the shared service that the resources use
+    private void createData(int books, int customers) {
+        DataService dataService = DataService.getInstance();
+
+        authorIds = new long[Math.max(1, books / BOOKS_PER_AUTHOR)];
+        for (int i = 0; i < authorIds.length; i++) {
+            authorIds[i] = dataService.createAuthor(new Author(null, "Author " + i, "Biography of author " + i)).getId();
+        }
+
+        bookIds = new long[Math.max(1, books)];
+        for (int i = 0; i < bookIds.length; i++) {
+            Book book = new Book(null, "Book title " + i, authorIds[i % authorIds.length], isbn(i),
+                    1900 + i % 120, 5 + i % 50, STOCK);
+            bookIds[i] = dataService.createBook(book).getId();
+        }
+
+        customerIds = new long[Math.max(1, customers)];
+        for (int i = 0; i < customerIds.length; i++) {
+            Customer customer = new Customer(null, "Customer " + i, "customer" + i + "@example.com", "secret");
+            customerIds[i] = dataService.createCustomer(customer).getId();
+            idleCustomers.add(customerIds[i]);
+        }
+    }
+
+    // Send requests on schedule for the warmup and the measured duration, then wait for the stragglers
+    private void run(int rate, int warmupSec, int durationSec) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom();
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSec);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSec);
+
+        System.out.printf("Sending %d requests/s to %s: %d s warmup, %d s measured%n",
+                rate, baseUri, warmupSec, durationSec);
+        for (long n = 0; ; n++) {
+            long scheduled = start + n * interval;
+            if (scheduled - end >= 0) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            send(next(random), scheduled, scheduled - measureFrom >= 0, random);
+        }
+
+        try {
+            inFlight.awaitAdvanceInterruptibly(inFlight.arrive(), timeout.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.out.printf("%d requests still in flight at the end of the run%n", inFlight.getUnarrivedParties());
+        }
+    }
+
+    // Pick an operation by weight
+    private Operation next(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (cumulativeWeights[i] <= pick) {
+            i++;
+        }
+        return operations[i];
+    }
+
+    private void send(Operation operation, long scheduled, boolean measured, SplittableRandom random) {
+        CompletableFuture<Boolean> done;
+        switch (operation) {
+            case BOOKS:
+                long after = bookIds[random.nextInt(bookIds.length)] - 1;
+                done = request(operation, get("/books?limit=" + pageSize + "&after=" + after), scheduled, measured);
+                break;
+            case AUTHOR_BOOKS:
+                long authorId = authorIds[random.nextInt(authorIds.length)];
+                done = request(operation, get("/authors/" + authorId + "/books"), scheduled, measured);
+                break;
+            case CART:
+                done = request(operation, addToCart(customerIds[random.nextInt(customerIds.length)], random),
+                        scheduled, measured);
+                break;
+            case CHECKOUT:
+                // Only share a customer when every one is checking out; the other checkout may then empty its cart
+                Long idle = idleCustomers.poll();
+                long customerId = idle != null ? idle : customerIds[random.nextInt(customerIds.length)];
+                HttpRequest order = post("/customers/" + customerId + "/orders", HttpRequest.BodyPublishers.noBody());
+                done = request(Operation.CART, addToCart(customerId, random), scheduled, measured)
+                        .thenCompose(added -> request(Operation.CHECKOUT, order, System.nanoTime(), measured));
+                if (idle != null) {
+                    done = done.whenComplete((success, failure) -> idleCustomers.add(idle));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation: " + operation);
+        }
+        inFlight.register();
+        done.whenComplete((success, failure) -> inFlight.arriveAndDeregister());
+    }
+
+    // Send a request, recording its latency from the scheduled time if it is measured
+    private CompletableFuture<Boolean> request(Operation operation, HttpRequest request, long scheduled, boolean measured) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    boolean success = failure == null && response.statusCode() / 100 == 2;
+                    if (measured) {
+                        stats.get(operation).record(System.nanoTime() - scheduled, success);
+                    }
+                    return success;
+                });
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, HttpRequest.BodyPublisher body) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .POST(body)
+                .build();
+    }
+
+    private HttpRequest addToCart(long customerId, SplittableRandom random) {
+        String item = "{\"bookId\":" + bookIds[random.nextInt(bookIds.length)] + ",\"quantity\":1}";
+        return post("/customers/" + customerId + "/cart/items", HttpRequest.BodyPublishers.ofString(item));
+    }
+
+    // Print throughput and latency percentiles per endpoint
+    private void report(int durationSec) {
+        List<String> header = new ArrayList<>(List.of("endpoint", "requests", "errors", "req/s"));
+        for (double percentile : PERCENTILES) {
+            header.add("p" + formatPercentile(percentile) + " ms");
+        }
+        header.add("max ms");
+        System.out.printf("%-34s %10s %8s %10s %10s %10s %10s %10s%n", header.toArray());
+
+        for (Map.Entry<Operation, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpoint = entry.getValue();
+            List<Object> row = new ArrayList<>(List.of(entry.getKey().getEndpoint(), endpoint.getCount(),
+                    endpoint.getErrors(), String.format("%.1f", (double) endpoint.getCount() / durationSec)));
+            for (double percentile : PERCENTILES) {
+                row.add(millis(endpoint.percentileMicros(percentile)));
+            }
+            row.add(millis(endpoint.getMaxMicros()));
+            System.out.printf("%-34s %10d %8d %10s %10s %10s %10s %10s%n", row.toArray());
+        }
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+
+    // A valid, unique ISBN-13 for a book index
+    private static String isbn(int index) {
+        String digits = String.format("978%09d", index);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,39 @@
+package com.bookstore.load;
+
+import java.util.Locale;
+
+/**
+ * Storefront operations driven by the load harness, each reported as its own endpoint
+ */
+public enum Operation {
+    BOOKS("GET /books"),
+    AUTHOR_BOOKS("GET /authors/{id}/books"),
+    CART("POST /customers/{id}/cart/items"),
+    CHECKOUT("POST /customers/{id}/orders");
+
+    private final String endpoint;
+
+    Operation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Get the endpoint the operation requests
+     *
+     * @return The method and path template
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get the operation named in a workload mix
+     *
+     * @param name The name, such as books or author_books, in any case
+     * @return The operation
+     * @throws IllegalArgumentException If no operation has the name
+     */
+    public static Operation of(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -1,11 +1,19 @@
 package com.bookstore;
 
 
+import com.bookstore.cache.CachedBodyWriter;
+import com.bookstore.compression.CompressionInterceptor;
 import com.bookstore.exception.ExceptionMapper;
+import com.bookstore.json.ModelCborProvider;
+import com.bookstore.json.ModelJsonProvider;
+import com.bookstore.metrics.MetricsFilter;
 import com.bookstore.resources.AuthorResource;
 import com.bookstore.resources.BookResource;
 import com.bookstore.resources.CartResource;
 import com.bookstore.resources.CustomerResource;
+import com.bookstore.resources.ExportResource;
+import com.bookstore.resources.MetricsResource;
+import com.bookstore.resources.OrderLookupResource;
 import com.bookstore.resources.OrderResource;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
@@ -14,7 +22,7 @@ import java.util.Set;
 
 /**
  * JAX-RS Application configuration class
- * Registers all resources and providers (exception mappers)
+ * Registers all resources and providers (exception mappers, entity providers, compression, metrics)
  */
 @ApplicationPath("/api")
 public class ApplicationConfig extends Application {
@@ -34,10 +42,24 @@ public class ApplicationConfig extends Application {
         resources.add(CustomerResource.class);
         resources.add(CartResource.class);
         resources.add(OrderResource.class);
+        resources.add(OrderLookupResource.class);
+        resources.add(ExportResource.class);
+        resources.add(MetricsResource.class);
         
         // Register the combined exception mapper provider
         resources.add(ExceptionMapper.class);
         
+        // Register the JSON and CBOR providers for the model classes
+        resources.add(ModelJsonProvider.class);
+        resources.add(ModelCborProvider.class);
+        resources.add(CachedBodyWriter.class);
+        
+        // Register response compression
+        resources.add(CompressionInterceptor.class);
+        
+        // Register request metrics
+        resources.add(MetricsFilter.class);
+        
         return resources;
     }
 }
@@ -0,0 +1,40 @@
+package com.bookstore.cache;
+
+import com.bookstore.json.ModelCborProvider;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes cached response entries as their encoded bytes
+ * Resources return the entry itself rather than its bytes, so the
+ * compression interceptor can pick the gzipped copy when there is one
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+public class CachedBodyWriter implements MessageBodyWriter<ResponseCache.Entry> {
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == ResponseCache.Entry.class;
+    }
+
+    @Override
+    public long getSize(ResponseCache.Entry entry, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(ResponseCache.Entry entry, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        entityStream.write(entry.getBody());
+    }
+}
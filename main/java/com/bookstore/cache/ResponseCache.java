@@ -0,0 +1,215 @@
+package com.bookstore.cache;
+
+import com.bookstore.compression.Compression;
+import com.bookstore.json.Encoding;
+import com.bookstore.json.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of encoded response bodies
+ * Each entry holds the JSON or CBOR bytes of a response, optionally with a gzipped
+ * copy of bodies large enough to be worth it, together with the version of the data it was built from. A lookup
+ * with a newer version rebuilds the entry, so an entry is invalidated exactly
+ * when the version it depends on moves; nothing has to be purged by hand
+ *
+ * Entries are evicted approximately least recently used first once their
+ * total size exceeds the bound. A hit is a concurrent map lookup plus a
+ * write of the entry's access time, with no lock; only a miss that pushes
+ * the cache over its bound takes the eviction lock, and bodies are built
+ * outside it
+ */
+public class ResponseCache {
+    // Rough per-entry overhead counted against the size bound
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final int gzipMinBytes;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+
+    // Held by the one thread evicting at a time
+    private final Object evictionLock = new Object();
+
+    /**
+     * Writes a response body, and any headers that go with it
+     */
+    @FunctionalInterface
+    public interface Body {
+        void write(JsonWriter json, Map<String, Object> headers) throws IOException;
+    }
+
+    /**
+     * An encoded response body
+     */
+    public static final class Entry {
+        private final long version;
+        private final byte[] body;
+        private final byte[] gzipBody;
+        private final Map<String, Object> headers;
+
+        // Last hit, from System.nanoTime(); racy updates only blur the eviction order
+        private volatile long lastAccess = System.nanoTime();
+
+        Entry(long version, byte[] body, byte[] gzipBody, Map<String, Object> headers) {
+            this.version = version;
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.headers = headers;
+        }
+
+        // The version of the data the body was built from
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        // The gzipped body, or null when the cache doesn't gzip or the body is too small
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        public Map<String, Object> getHeaders() {
+            return headers;
+        }
+
+        int size() {
+            return ENTRY_OVERHEAD + body.length + (gzipBody == null ? 0 : gzipBody.length);
+        }
+    }
+
+    // An entry considered for eviction, with its access time as of the start of the eviction
+    private static final class Candidate {
+        final String key;
+        final Entry entry;
+        final long lastAccess;
+
+        Candidate(String key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    /**
+     * Create a cache
+     *
+     * @param maxBytes The bound on the total size of the entries; 0 or less disables caching
+     * @param gzipMinBytes The smallest body to keep a gzipped copy of; less than 0 disables gzip
+     */
+    public ResponseCache(long maxBytes, int gzipMinBytes) {
+        this.maxBytes = maxBytes;
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    /**
+     * Get the encoded body for a key, building it if the cached one is older than a version
+     * The version must be read before any of the data the body is built from:
+     * the body is then at least as new as the version
+     *
+     * @param key The endpoint and parameters
+     * @param encoding The encoding of the body
+     * @param version The current version of the data behind the body
+     * @param body Writes the body on a miss
+     * @return The entry, built from data at least as new as the version
+     */
+    public Entry get(String key, Encoding encoding, long version, Body body) {
+        String cacheKey = encoding + " " + key;
+        if (maxBytes > 0) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null && entry.version >= version) {
+                entry.lastAccess = System.nanoTime();
+                return entry;
+            }
+        }
+
+        Entry built = build(encoding, version, body);
+        if (maxBytes <= 0 || built.size() > maxBytes) {
+            return built;
+        }
+
+        // Store it unless a concurrent miss stored a newer body already
+        Entry stored = entries.merge(cacheKey, built, (current, candidate) -> {
+            if (current.version > candidate.version) {
+                return current;
+            }
+            size.addAndGet(-current.size());
+            return candidate;
+        });
+        if (stored != built) {
+            return stored;
+        }
+        if (size.addAndGet(built.size()) > maxBytes) {
+            evict(built);
+        }
+        return built;
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        synchronized (evictionLock) {
+            entries.keySet().forEach(this::remove);
+        }
+    }
+
+    // Evict the least recently hit entries, other than the one just stored, until the cache fits
+    private void evict(Entry keep) {
+        synchronized (evictionLock) {
+            if (size.get() <= maxBytes) {
+                return;
+            }
+            // Sort on a copy of the access times, which hits keep changing
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) -> candidates.add(new Candidate(key, entry)));
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+            for (Candidate candidate : candidates) {
+                if (size.get() <= maxBytes) {
+                    break;
+                }
+                if (candidate.entry != keep && entries.remove(candidate.key, candidate.entry)) {
+                    size.addAndGet(-candidate.entry.size());
+                }
+            }
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size.addAndGet(-removed.size());
+        }
+    }
+
+    // Encode a body, and gzip it if configured and large enough
+    private Entry build(Encoding encoding, long version, Body body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+            Map<String, Object> headers = new LinkedHashMap<>();
+            try (JsonWriter writer = encoding.writer(bytes)) {
+                body.write(writer, headers);
+            }
+            byte[] encoded = bytes.toByteArray();
+
+            byte[] gzipped = gzipMinBytes >= 0 && encoded.length >= gzipMinBytes ? Compression.gzip(encoded) : null;
+            return new Entry(version, encoded, gzipped,
+                    headers.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(headers));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bookstore.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Gzip or deflate stream over a pooled deflater
+ * GZIPOutputStream always allocates its own deflater, so gzip framing (header,
+ * CRC-32 and length trailer) is written here around a raw deflater instead.
+ * Flushing sync-flushes the deflater, so everything written so far can be
+ * decoded by the client. Closing finishes the coding and returns the deflater
+ * to its pool but leaves the underlying stream open, so it can wrap a
+ * response entity stream
+ */
+public final class CompressedOutputStream extends DeflaterOutputStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    // Magic number, deflate method, no flags, no modification time, no extra flags, unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Compression.Coding coding;
+    private final CRC32 crc;
+    private boolean headerWritten;
+    private boolean closed;
+
+    CompressedOutputStream(OutputStream out, Deflater deflater, Compression.Coding coding) {
+        super(out, deflater, BUFFER_SIZE, true);
+        this.coding = coding;
+        this.crc = coding == Compression.Coding.GZIP ? new CRC32() : null;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        writeHeader();
+        super.write(bytes, offset, length);
+        if (crc != null) {
+            crc.update(bytes, offset, length);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeHeader();
+        super.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (def.finished()) {
+            return;
+        }
+        writeHeader();
+        super.finish();
+        if (crc != null) {
+            writeInt((int) crc.getValue());
+            writeInt((int) def.getBytesRead());
+        }
+    }
+
+    /**
+     * Finish the coding, flush the underlying stream and return the deflater
+     * The underlying stream is left open
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            finish();
+            out.flush();
+        } finally {
+            Compression.release(def, coding);
+        }
+    }
+
+    /**
+     * Return the deflater without finishing, after the body failed to write
+     */
+    public void abandon() {
+        if (!closed) {
+            closed = true;
+            Compression.release(def, coding);
+        }
+    }
+
+    // Write the gzip header before the first compressed byte
+    private void writeHeader() throws IOException {
+        if (crc != null && !headerWritten) {
+            headerWritten = true;
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    // Write a 32-bit little-endian value, as gzip trailers use
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+}
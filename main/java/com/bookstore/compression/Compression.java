@@ -0,0 +1,178 @@
+package com.bookstore.compression;
+
+import com.bookstore.config.Settings;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Response compression settings, content-coding negotiation and pooled deflaters
+ * Deflaters hold sizeable native buffers, so instead of one per response they
+ * are borrowed from a pool per coding and reset when handed back
+ *
+ * Configured by bookstore.compression.enabled (default true),
+ * bookstore.compression.minBytes (default 1024; smaller bodies are sent as is)
+ * and bookstore.compression.level (0-9, default 6)
+ */
+public final class Compression {
+    private static final String ENABLED_SETTING = "bookstore.compression.enabled";
+    private static final String MIN_BYTES_SETTING = "bookstore.compression.minBytes";
+    private static final String LEVEL_SETTING = "bookstore.compression.level";
+
+    private static final boolean ENABLED = Settings.getBoolean(ENABLED_SETTING, true);
+    private static final int MIN_BYTES = Settings.getInt(MIN_BYTES_SETTING, 1024);
+    private static final int LEVEL = Math.max(Deflater.NO_COMPRESSION,
+            Math.min(Deflater.BEST_COMPRESSION, Settings.getInt(LEVEL_SETTING, 6)));
+
+    // Idle deflaters; gzip uses raw deflate inside its own framing, deflate uses zlib framing
+    private static final int POOL_SIZE = 64;
+    private static final ArrayBlockingQueue<Deflater> RAW_DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final ArrayBlockingQueue<Deflater> ZLIB_DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * Content codings the server can apply
+     */
+    public enum Coding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Coding(String token) {
+            this.token = token;
+        }
+
+        // The Content-Encoding token
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private Compression() {
+    }
+
+    /**
+     * Check whether responses are compressed at all
+     *
+     * @return true if compression is enabled
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Get the smallest body worth compressing
+     *
+     * @return The threshold in bytes
+     */
+    public static int getMinBytes() {
+        return MIN_BYTES;
+    }
+
+    /**
+     * Pick the content coding for an Accept-Encoding header
+     * The coding with the highest quality wins, gzip on a tie. An explicit
+     * coding takes precedence over the "*" wildcard
+     *
+     * @param acceptEncoding The header value, or null
+     * @return The coding, or null if the response should not be compressed
+     */
+    public static Coding negotiate(String acceptEncoding) {
+        if (!ENABLED || acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double wildcard = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = quality(parts);
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("deflate")) {
+                deflate = quality;
+            } else if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        if (gzip < 0) {
+            gzip = wildcard;
+        }
+        if (deflate < 0) {
+            deflate = wildcard;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? Coding.GZIP : Coding.DEFLATE;
+    }
+
+    // Quality parameter of one Accept-Encoding coding; 1 when absent, 0 when malformed
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Open a compressing stream over an output stream, with a pooled deflater
+     *
+     * @param out The stream receiving the compressed bytes
+     * @param coding The content coding
+     * @return The compressing stream; close it to finish the coding and return the deflater
+     */
+    public static CompressedOutputStream compress(OutputStream out, Coding coding) {
+        ArrayBlockingQueue<Deflater> pool = pool(coding);
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(LEVEL, coding == Coding.GZIP);
+        }
+        return new CompressedOutputStream(out, deflater, coding);
+    }
+
+    /**
+     * Gzip a byte array with a pooled deflater
+     *
+     * @param bytes The bytes
+     * @return The gzipped bytes
+     */
+    public static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (CompressedOutputStream out = compress(compressed, Coding.GZIP)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Hand a deflater back to its pool, or free it if the pool is full
+     *
+     * @param deflater The deflater
+     * @param coding The coding it was borrowed for
+     */
+    static void release(Deflater deflater, Coding coding) {
+        deflater.reset();
+        if (!pool(coding).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static ArrayBlockingQueue<Deflater> pool(Coding coding) {
+        return coding == Coding.GZIP ? RAW_DEFLATERS : ZLIB_DEFLATERS;
+    }
+}
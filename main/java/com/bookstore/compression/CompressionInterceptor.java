@@ -0,0 +1,214 @@
+package com.bookstore.compression;
+
+import com.bookstore.cache.ResponseCache;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Compresses response bodies with the coding negotiated from Accept-Encoding
+ * Bodies below the size threshold go out as they are: when the size isn't
+ * known up front, the start of the body is buffered until it either reaches
+ * the threshold or ends. Cached bodies that already have a gzipped copy are
+ * sent as that copy without compressing anything. Responses that set their
+ * own Content-Encoding are left alone
+ *
+ * A compressed response is a different representation, so its entity tag
+ * gets the coding appended. On the way in, that suffix is stripped from
+ * If-None-Match, so resources match the tags they issued themselves
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ContainerRequestFilter, WriterInterceptor {
+    // Request property holding the negotiated coding
+    private static final String CODING_PROPERTY = CompressionInterceptor.class.getName() + ".coding";
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        Compression.Coding coding = Compression.negotiate(request.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (coding != null) {
+            request.setProperty(CODING_PROPERTY, coding);
+        }
+
+        // Match compressed variants against the tag of the uncompressed representation
+        List<String> ifNoneMatch = request.getHeaders().get(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (ListIterator<String> values = ifNoneMatch.listIterator(); values.hasNext(); ) {
+                String value = values.next();
+                for (Compression.Coding encoded : Compression.Coding.values()) {
+                    value = value.replace("-" + encoded.getToken() + "\"", "\"");
+                }
+                values.set(value);
+            }
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (!Compression.isEnabled() || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        Compression.Coding coding = (Compression.Coding) context.getProperty(CODING_PROPERTY);
+        if (coding == null) {
+            context.proceed();
+            return;
+        }
+
+        // Skip bodies whose size is known to be under the threshold, and serve precompressed copies
+        Object entity = context.getEntity();
+        if (entity instanceof ResponseCache.Entry) {
+            ResponseCache.Entry entry = (ResponseCache.Entry) entity;
+            if (entry.getBody().length < Compression.getMinBytes()) {
+                context.proceed();
+                return;
+            }
+            if (coding == Compression.Coding.GZIP && entry.getGzipBody() != null) {
+                markEncoded(headers, coding);
+                context.getOutputStream().write(entry.getGzipBody());
+                return;
+            }
+        } else if (entity instanceof byte[] && ((byte[]) entity).length < Compression.getMinBytes()) {
+            context.proceed();
+            return;
+        }
+
+        // Buffer the start of the body until it is clear whether compressing is worth it
+        OutputStream target = context.getOutputStream();
+        ThresholdOutputStream out = new ThresholdOutputStream(target, coding, headers);
+        context.setOutputStream(out);
+        boolean written = false;
+        try {
+            context.proceed();
+            written = true;
+        } finally {
+            out.finish(written);
+            context.setOutputStream(target);
+        }
+    }
+
+    /**
+     * Set the headers of a compressed response
+     * Must be called before the first byte of the body is written
+     *
+     * @param headers The response headers
+     * @param coding The applied coding
+     */
+    private static void markEncoded(MultivaluedMap<String, Object> headers, Compression.Coding coding) {
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+
+        // Give the compressed representation its own tag
+        Object tag = headers.getFirst(HttpHeaders.ETAG);
+        if (tag instanceof EntityTag) {
+            EntityTag entityTag = (EntityTag) tag;
+            headers.putSingle(HttpHeaders.ETAG,
+                    new EntityTag(entityTag.getValue() + "-" + coding.getToken(), entityTag.isWeak()));
+        } else if (tag != null) {
+            String value = tag.toString();
+            int end = value.lastIndexOf('"');
+            if (end > 0) {
+                headers.putSingle(HttpHeaders.ETAG, value.substring(0, end) + "-" + coding.getToken() + "\"");
+            }
+        }
+    }
+
+    /**
+     * Holds back the start of a body until it reaches the compression threshold
+     * Below the threshold nothing reaches the target, so the headers can still
+     * change; once it is reached, the headers are marked and everything is
+     * compressed from then on. An explicit flush below the threshold also
+     * starts compressing, since the caller wants what it wrote so far sent now
+     */
+    private static final class ThresholdOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final Compression.Coding coding;
+        private final MultivaluedMap<String, Object> headers;
+        private final byte[] pending = new byte[Compression.getMinBytes()];
+        private int count;
+        private CompressedOutputStream compressed;
+
+        ThresholdOutputStream(OutputStream target, Compression.Coding coding, MultivaluedMap<String, Object> headers) {
+            this.target = target;
+            this.coding = coding;
+            this.headers = headers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (compressed != null) {
+                compressed.write(bytes, offset, length);
+                return;
+            }
+            if (count + length < pending.length) {
+                System.arraycopy(bytes, offset, pending, count, length);
+                count += length;
+                return;
+            }
+
+            // The body is large enough
+            startCompressing();
+            compressed.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (compressed == null) {
+                if (count == 0) {
+                    return;
+                }
+                startCompressing();
+            }
+            compressed.flush();
+        }
+
+        // Switch to compressing, starting with what was held back
+        private void startCompressing() throws IOException {
+            markEncoded(headers, coding);
+            compressed = Compression.compress(target, coding);
+            compressed.write(pending, 0, count);
+        }
+
+        // The entity stream is finished by finish(), not by writers closing it
+        @Override
+        public void close() {
+        }
+
+        /**
+         * End the body
+         *
+         * @param written Whether the body was written completely; if not, nothing more is sent
+         * @throws IOException if writing fails
+         */
+        void finish(boolean written) throws IOException {
+            if (compressed != null) {
+                if (written) {
+                    compressed.close();
+                } else {
+                    compressed.abandon();
+                }
+            } else if (written) {
+                target.write(pending, 0, count);
+            }
+        }
+    }
+}
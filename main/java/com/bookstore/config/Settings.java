@@ -0,0 +1,95 @@
+package com.bookstore.config;
+
+import java.util.Locale;
+
+/**
+ * Central access to runtime configuration
+ * Each setting is read from a system property (e.g. -Dbookstore.data.dir=...)
+ * and falls back to the matching environment variable (BOOKSTORE_DATA_DIR),
+ * then to the supplied default
+ */
+public final class Settings {
+
+    private Settings() {
+    }
+
+    /**
+     * Get a string setting
+     *
+     * @param key The property key
+     * @param defaultValue Value used when the setting is absent
+     * @return The configured value, or the default
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.replace('.', '_').toUpperCase(Locale.ROOT));
+        }
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Get an integer setting
+     *
+     * @param key The property key
+     * @param defaultValue Value used when the setting is absent or malformed
+     * @return The configured value, or the default
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a long setting
+     *
+     * @param key The property key
+     * @param defaultValue Value used when the setting is absent or malformed
+     * @return The configured value, or the default
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get a boolean setting
+     *
+     * @param key The property key
+     * @param defaultValue Value used when the setting is absent
+     * @return The configured value, or the default
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Get an enum setting, matched case-insensitively with '-' treated as '_'
+     *
+     * @param key The property key
+     * @param type The enum type
+     * @param defaultValue Value used when the setting is absent or unknown
+     * @param <E> The enum type
+     * @return The configured value, or the default
+     */
+    public static <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bookstore.csv;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming CSV writer (RFC 4180)
+ * Fields containing a comma, quote or line break are quoted, with quotes
+ * doubled; rows end with CRLF
+ */
+public class CsvWriter implements Closeable, Flushable {
+    private final Writer out;
+
+    // Whether the current row has no fields yet
+    private boolean rowStart = true;
+
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Write a row of fields and end it
+     *
+     * @param fields The fields; nulls are written as empty fields
+     * @return This writer
+     * @throws IOException if writing fails
+     */
+    public CsvWriter row(String... fields) throws IOException {
+        for (String field : fields) {
+            field(field);
+        }
+        return endRow();
+    }
+
+    public CsvWriter field(String value) throws IOException {
+        if (!rowStart) {
+            out.write(',');
+        }
+        rowStart = false;
+        if (value == null) {
+            return this;
+        }
+        if (!needsQuotes(value)) {
+            out.write(value);
+            return this;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+        out.write('"');
+        return this;
+    }
+
+    public CsvWriter field(long value) throws IOException {
+        return field(Long.toString(value));
+    }
+
+    public CsvWriter field(Long value) throws IOException {
+        return field(value == null ? null : value.toString());
+    }
+
+    public CsvWriter field(double value) throws IOException {
+        return field(Double.toString(value));
+    }
+
+    public CsvWriter endRow() throws IOException {
+        out.write("\r\n");
+        rowStart = true;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -7,7 +7,9 @@ package com.bookstore.exception;
 /**
  * Exception thrown when an author with the specified ID cannot be found
  */
-public class AuthorNotFoundException extends RuntimeException {
+public class AuthorNotFoundException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
     
     public AuthorNotFoundException(String message) {
         super(message);
@@ -8,7 +8,14 @@ package com.bookstore.exception;
  * Exception thrown when a book with the specified ID cannot be found
  */
 
-public class BookNotFoundException extends RuntimeException {
+public class BookNotFoundException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public BookNotFoundException(String message) {
+        super(message);
+    }
+    
     public BookNotFoundException(Long id) {
         super("Book with ID " + id + " not found.");
     }
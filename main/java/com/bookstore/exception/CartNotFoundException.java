@@ -7,7 +7,9 @@ package com.bookstore.exception;
 /**
  * Exception thrown when a cart for the specified customer cannot be found
  */
-public class CartNotFoundException extends RuntimeException {
+public class CartNotFoundException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
     
     public CartNotFoundException(String message) {
         super(message);
@@ -7,7 +7,9 @@ package com.bookstore.exception;
 /**
  * Exception thrown when a customer with the specified ID cannot be found
  */
-public class CustomerNotFoundException extends RuntimeException {
+public class CustomerNotFoundException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
     
     public CustomerNotFoundException(String message) {
         super(message);
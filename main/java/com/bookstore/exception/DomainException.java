@@ -0,0 +1,20 @@
+package com.bookstore.exception;
+
+import com.bookstore.config.Settings;
+
+/**
+ * Base class of the exceptions for expected outcomes, such as a missing book or
+ * an empty shelf, which ExceptionMapper turns into error responses
+ * They are created without a stack trace, since clients cause them often and
+ * the response never shows one; set bookstore.exceptions.stackTraces to true
+ * to capture traces while debugging
+ */
+public abstract class DomainException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    private static final boolean STACK_TRACES = Settings.getBoolean("bookstore.exceptions.stackTraces", false);
+    
+    protected DomainException(String message) {
+        super(message, null, false, STACK_TRACES);
+    }
+}
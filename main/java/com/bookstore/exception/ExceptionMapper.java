@@ -4,59 +4,111 @@
  */
 package com.bookstore.exception;
 
+import com.bookstore.metrics.Metrics;
 import com.bookstore.model.ErrorResponse;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.Provider;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Combined exception mapper class that handles all types of exceptions
- * Maps custom exceptions to appropriate HTTP responses
+ * Maps custom exceptions to appropriate HTTP responses through a table keyed
+ * by exception class. Each thrown type is resolved against the table once
+ * (a subclass maps like its nearest listed superclass) and the result,
+ * together with the type's error counter, is cached, so mapping a frequent
+ * error such as a missing book costs one lookup
  */
 @Provider
 public class ExceptionMapper implements javax.ws.rs.ext.ExceptionMapper<Throwable> {
-    @Override
-    public Response toResponse(Throwable exception) {
-        // Default error response for unexpected exceptions
-        ErrorResponse errorResponse = new ErrorResponse(
-                "Internal Server Error", 
-                exception.getMessage() != null ? exception.getMessage() : "An unexpected error occurred"
-        );
-        Response.Status status = Response.Status.INTERNAL_SERVER_ERROR;
-        
-        // Determine the appropriate HTTP status and error message based on exception type
-        if (exception instanceof BookNotFoundException) {
-            errorResponse = new ErrorResponse("Book Not Found", exception.getMessage());
-            status = Response.Status.NOT_FOUND;
-        }
-        else if (exception instanceof AuthorNotFoundException) {
-            errorResponse = new ErrorResponse("Author Not Found", exception.getMessage());
-            status = Response.Status.NOT_FOUND;
-        }
-        else if (exception instanceof CustomerNotFoundException) {
-            errorResponse = new ErrorResponse("Customer Not Found", exception.getMessage());
-            status = Response.Status.NOT_FOUND;
-        }
-        else if (exception instanceof CartNotFoundException) {
-            errorResponse = new ErrorResponse("Cart Not Found", exception.getMessage());
-            status = Response.Status.NOT_FOUND;
+
+    /**
+     * How one exception type is turned into an error response
+     */
+    private static final class Mapping {
+        private final Response.Status status;
+        private final String title;
+        // Used instead of the exception's message, or when it has none
+        private final String message;
+        private final boolean exceptionMessage;
+        private final LongAdder errors;
+
+        Mapping(Response.Status status, String title, String message, boolean exceptionMessage, LongAdder errors) {
+            this.status = status;
+            this.title = title;
+            this.message = message;
+            this.exceptionMessage = exceptionMessage;
+            this.errors = errors;
         }
-        else if (exception instanceof OrderNotFoundException) {
-            errorResponse = new ErrorResponse("Order Not Found", exception.getMessage());
-            status = Response.Status.NOT_FOUND;
+    }
+
+    private static final Map<Class<?>, Mapping> MAPPINGS = new HashMap<>();
+
+    // Unexpected exceptions
+    private static final Mapping DEFAULT_MAPPING = new Mapping(Response.Status.INTERNAL_SERVER_ERROR,
+            "Internal Server Error", "An unexpected error occurred", true, null);
+
+    static {
+        map(BookNotFoundException.class, Response.Status.NOT_FOUND, "Book Not Found");
+        map(AuthorNotFoundException.class, Response.Status.NOT_FOUND, "Author Not Found");
+        map(CustomerNotFoundException.class, Response.Status.NOT_FOUND, "Customer Not Found");
+        map(CartNotFoundException.class, Response.Status.NOT_FOUND, "Cart Not Found");
+        map(OrderNotFoundException.class, Response.Status.NOT_FOUND, "Order Not Found");
+        map(InvalidInputException.class, Response.Status.BAD_REQUEST, "Invalid Input");
+        map(OutOfStockException.class, Response.Status.BAD_REQUEST, "Out Of Stock");
+        map(ServiceTimeoutException.class, Response.Status.SERVICE_UNAVAILABLE, "Service Timeout");
+
+        // The messages of these describe server internals, so clients get a fixed one
+        MAPPINGS.put(CancellationException.class, new Mapping(Response.Status.SERVICE_UNAVAILABLE,
+                "Request Cancelled", "The request was cancelled before it completed.", false, null));
+        MAPPINGS.put(RejectedExecutionException.class, new Mapping(Response.Status.SERVICE_UNAVAILABLE,
+                "Service Unavailable", "The server is not accepting work.", false, null));
+    }
+
+    // The mapping of each thrown type, with that type's own error counter
+    private static final ClassValue<Mapping> RESOLVED = new ClassValue<Mapping>() {
+        @Override
+        protected Mapping computeValue(Class<?> type) {
+            Mapping mapping = DEFAULT_MAPPING;
+            for (Class<?> candidate = type; candidate != null; candidate = candidate.getSuperclass()) {
+                Mapping listed = MAPPINGS.get(candidate);
+                if (listed != null) {
+                    mapping = listed;
+                    break;
+                }
+            }
+            return new Mapping(mapping.status, mapping.title, mapping.message, mapping.exceptionMessage,
+                    Metrics.exceptionCounter(type));
         }
-        else if (exception instanceof InvalidInputException) {
-            errorResponse = new ErrorResponse("Invalid Input", exception.getMessage());
-            status = Response.Status.BAD_REQUEST;
+    };
+
+    private static void map(Class<? extends Throwable> type, Response.Status status, String title) {
+        MAPPINGS.put(type, new Mapping(status, title, null, true, null));
+    }
+
+    @Override
+    public Response toResponse(Throwable exception) {
+        // Map the cause of a failed asynchronous stage, not its wrapper
+        while ((exception instanceof CompletionException || exception instanceof ExecutionException)
+                && exception.getCause() != null) {
+            exception = exception.getCause();
         }
-        else if (exception instanceof OutOfStockException) {
-            errorResponse = new ErrorResponse("Out Of Stock", exception.getMessage());
-            status = Response.Status.BAD_REQUEST;
+        Mapping mapping = RESOLVED.get(exception.getClass());
+        mapping.errors.increment();
+
+        String message = mapping.message;
+        if (mapping.exceptionMessage && exception.getMessage() != null) {
+            message = exception.getMessage();
         }
-        
-        // Return the appropriate response
-        return Response.status(status)
-                .entity(errorResponse)
+
+        return Response.status(mapping.status)
+                .entity(new ErrorResponse(mapping.title, message))
                 .type(MediaType.APPLICATION_JSON)
                 .build();
     }
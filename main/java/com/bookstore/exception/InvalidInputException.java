@@ -7,7 +7,9 @@ package com.bookstore.exception;
 /**
  * Exception thrown when the input data provided is invalid
  */
-public class InvalidInputException extends RuntimeException {
+public class InvalidInputException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
     
     public InvalidInputException(String message) {
         super(message);
@@ -7,7 +7,9 @@ package com.bookstore.exception;
 /**
  * Exception thrown when an order with the specified ID cannot be found
  */
-public class OrderNotFoundException extends RuntimeException {
+public class OrderNotFoundException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
     
     public OrderNotFoundException(String message) {
         super(message);
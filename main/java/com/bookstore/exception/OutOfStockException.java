@@ -7,7 +7,9 @@ package com.bookstore.exception;
 /**
  * Exception thrown when a book is out of stock or the requested quantity exceeds available stock
  */
-public class OutOfStockException extends RuntimeException {
+public class OutOfStockException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
     
     public OutOfStockException(String message) {
         super(message);
@@ -0,0 +1,13 @@
+package com.bookstore.exception;
+
+/**
+ * Exception thrown when asynchronous service work doesn't finish within its timeout
+ */
+public class ServiceTimeoutException extends DomainException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public ServiceTimeoutException(long timeoutMillis) {
+        super("The request did not complete within " + timeoutMillis + " ms.");
+    }
+}
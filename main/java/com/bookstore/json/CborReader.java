@@ -0,0 +1,420 @@
+package com.bookstore.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming (pull) CBOR (RFC 8949) reader with the JsonReader interface
+ * Reads the JSON-compatible subset of CBOR: maps with text keys, arrays,
+ * text strings, integers, half, single and double precision floats,
+ * booleans and null (undefined reads as null). Containers and text strings
+ * may be of definite or indefinite length, and tags are ignored. Byte
+ * strings and other simple values are rejected. Malformed input is reported
+ * as an IOException naming the offending position
+ */
+public final class CborReader extends JsonReader {
+    // Maximum nesting depth supported
+    private static final int MAX_DEPTH = 32;
+
+    // Remaining item count of an indefinite-length container
+    private static final long INDEFINITE = -1;
+
+    private static final int BREAK = 0xff;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[1024];
+    private int pos;
+    private int limit;
+    private long offset;
+
+    // Open containers: whether each is a map, its remaining items, and whether a map expects a key next
+    private final boolean[] maps = new boolean[MAX_DEPTH];
+    private final long[] remaining = new long[MAX_DEPTH];
+    private final boolean[] keyNext = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean started;
+
+    // The token read ahead by peek(), with its value
+    private Token peeked;
+    private String peekedText;
+    private boolean peekedBoolean;
+    private boolean peekedInteger;
+    private long peekedLong;
+    private double peekedDouble;
+    private long peekedLength;
+
+    // Scratch space for text strings, grown as bytes actually arrive
+    private byte[] text = new byte[64];
+
+    public CborReader(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        // Top level: a single item, then the end of the input
+        if (depth == 0) {
+            if (started) {
+                if (read() != -1) {
+                    throw syntaxError("Unexpected data after the CBOR value");
+                }
+                return peeked = Token.END_DOCUMENT;
+            }
+            started = true;
+            return peekItem(readInitial());
+        }
+
+        int top = depth - 1;
+        if (remaining[top] == 0) {
+            return peeked = maps[top] ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+        int initial = readInitial();
+        if (initial == BREAK) {
+            if (remaining[top] != INDEFINITE) {
+                throw syntaxError("Unexpected break");
+            }
+            if (maps[top] && !keyNext[top]) {
+                throw syntaxError("Expected a value");
+            }
+            return peeked = maps[top] ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+        if (remaining[top] > 0) {
+            remaining[top]--;
+        }
+        if (maps[top]) {
+            keyNext[top] = !keyNext[top];
+            if (!keyNext[top]) {
+                if (initial >>> 5 != 3) {
+                    throw syntaxError("Expected a property name");
+                }
+                peekedText = readText(initial);
+                return peeked = Token.NAME;
+            }
+        }
+        return peekItem(initial);
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(true, peekedLength == INDEFINITE ? INDEFINITE : peekedLength * 2);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(false, peekedLength);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return peekedText;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return peekedText;
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    @Override
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        return peekedInteger ? peekedLong : peekedDouble;
+    }
+
+    @Override
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        if (!peekedInteger) {
+            throw syntaxError("Expected a whole number but was " + peekedDouble);
+        }
+        return peekedLong;
+    }
+
+    @Override
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw syntaxError("Number out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    nested++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    nested++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    nested--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    nested--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+                default:
+                    peeked = null;
+                    break;
+            }
+        } while (nested > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Decode the item starting with an initial byte, up to its content for containers
+    private Token peekItem(int initial) throws IOException {
+        int info = initial & 0x1f;
+        switch (initial >>> 5) {
+            case 0:
+                peekedLong = readArgument(info);
+                if (peekedLong < 0) {
+                    throw syntaxError("Number out of range");
+                }
+                peekedInteger = true;
+                return peeked = Token.NUMBER;
+            case 1:
+                peekedLong = readArgument(info);
+                if (peekedLong < 0) {
+                    throw syntaxError("Number out of range");
+                }
+                peekedLong = -1 - peekedLong;
+                peekedInteger = true;
+                return peeked = Token.NUMBER;
+            case 2:
+                throw syntaxError("Byte strings are not supported");
+            case 3:
+                peekedText = readText(initial);
+                return peeked = Token.STRING;
+            case 4:
+                peekedLength = readLength(info, Long.MAX_VALUE);
+                return peeked = Token.BEGIN_ARRAY;
+            case 5:
+                peekedLength = readLength(info, Long.MAX_VALUE / 2);
+                return peeked = Token.BEGIN_OBJECT;
+            case 6:
+                // Tags only annotate the item that follows
+                readArgument(info);
+                return peekItem(readInitial());
+            default:
+                return peekSimple(info);
+        }
+    }
+
+    // Decode a simple value or float
+    private Token peekSimple(int info) throws IOException {
+        switch (info) {
+            case 20:
+            case 21:
+                peekedBoolean = info == 21;
+                return peeked = Token.BOOLEAN;
+            case 22:
+            case 23:
+                return peeked = Token.NULL;
+            case 25:
+                peekedDouble = halfToDouble((int) readUnsigned(2));
+                break;
+            case 26:
+                peekedDouble = Float.intBitsToFloat((int) readUnsigned(4));
+                break;
+            case 27:
+                peekedDouble = Double.longBitsToDouble(readUnsigned(8));
+                break;
+            case 31:
+                throw syntaxError("Unexpected break");
+            default:
+                throw syntaxError("Unsupported simple value " + info);
+        }
+        peekedInteger = false;
+        return peeked = Token.NUMBER;
+    }
+
+    // Decode an IEEE 754 half-precision float
+    private static double halfToDouble(int bits) {
+        int exponent = (bits >> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+        double value;
+        if (exponent == 0) {
+            value = Math.scalb((double) mantissa, -24);
+        } else if (exponent == 31) {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        } else {
+            value = Math.scalb((double) (mantissa + 1024), exponent - 25);
+        }
+        return (bits & 0x8000) != 0 ? -value : value;
+    }
+
+    // Read a text string of definite length, or the chunks of an indefinite one
+    private String readText(int initial) throws IOException {
+        int info = initial & 0x1f;
+        int length = 0;
+        if (info != 31) {
+            length = readBytes(0, readLength(info, Integer.MAX_VALUE));
+        } else {
+            for (int chunk = readInitial(); chunk != BREAK; chunk = readInitial()) {
+                if (chunk >>> 5 != 3 || (chunk & 0x1f) == 31) {
+                    throw syntaxError("Invalid text string chunk");
+                }
+                length = readBytes(length, readLength(chunk & 0x1f, Integer.MAX_VALUE - length));
+            }
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Append bytes to the text scratch space at a position, returning the new end
+    private int readBytes(int start, long length) throws IOException {
+        int end = start;
+        for (long left = length; left > 0; ) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unexpected end of input");
+            }
+            int n = (int) Math.min(left, limit - pos);
+            if (end + n > text.length) {
+                text = Arrays.copyOf(text, Math.max(end + n, text.length * 2));
+            }
+            System.arraycopy(buffer, pos, text, end, n);
+            pos += n;
+            end += n;
+            left -= n;
+        }
+        return end;
+    }
+
+    // Read the length of a container or string; INDEFINITE for indefinite length
+    private long readLength(int info, long max) throws IOException {
+        if (info == 31) {
+            return INDEFINITE;
+        }
+        long length = readArgument(info);
+        if (length < 0 || length > max) {
+            throw syntaxError("Length out of range");
+        }
+        return length;
+    }
+
+    // Read the argument following an initial byte; arguments above Long.MAX_VALUE come back negative
+    private long readArgument(int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+        switch (info) {
+            case 24:
+                return readUnsigned(1);
+            case 25:
+                return readUnsigned(2);
+            case 26:
+                return readUnsigned(4);
+            case 27:
+                return readUnsigned(8);
+            default:
+                throw syntaxError("Invalid additional information " + info);
+        }
+    }
+
+    // Read a big-endian unsigned value of a number of bytes
+    private long readUnsigned(int length) throws IOException {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int b = read();
+            if (b == -1) {
+                throw syntaxError("Unexpected end of input");
+            }
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    private void push(boolean map, long items) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw syntaxError("Nesting too deep");
+        }
+        maps[depth] = map;
+        remaining[depth] = items;
+        keyNext[depth] = true;
+        depth++;
+    }
+
+    // Consume the peeked token, which must be of a kind
+    private void expect(Token token) throws IOException {
+        Token actual = peek();
+        if (actual != token) {
+            throw syntaxError("Expected " + token + " but was " + actual);
+        }
+        peeked = null;
+    }
+
+    private int readInitial() throws IOException {
+        int initial = read();
+        if (initial == -1) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return initial;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at byte " + (offset + pos) + ".");
+    }
+}
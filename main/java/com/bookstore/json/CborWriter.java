@@ -0,0 +1,202 @@
+package com.bookstore.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Streaming CBOR (RFC 8949) writer with the JsonWriter interface
+ * Objects and arrays are written as indefinite-length maps and arrays, so,
+ * as with JSON, nothing has to be counted up front. Integers take the
+ * shortest encoding and doubles are written as single precision when that
+ * loses nothing. Encodes into a byte buffer borrowed from a small shared
+ * pool; closing flushes it and hands it back but leaves the underlying
+ * stream open, so it can be used on a response entity stream
+ */
+public final class CborWriter extends JsonWriter {
+    private static final int BUFFER_SIZE = 8192;
+
+    // Major types
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1 << 5;
+    private static final int TEXT = 3 << 5;
+
+    // Initial bytes of indefinite-length containers, their end, and simple values
+    private static final int BEGIN_ARRAY = 0x9f;
+    private static final int BEGIN_MAP = 0xbf;
+    private static final int BREAK = 0xff;
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT = 0xfa;
+    private static final int DOUBLE = 0xfb;
+
+    // Idle buffers; writers allocate a fresh one when the pool is empty
+    private static final ArrayBlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(64);
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int count;
+
+    public CborWriter(OutputStream out) {
+        this.out = out;
+        byte[] pooled = POOL.poll();
+        this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeByte(BEGIN_MAP);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeByte(BEGIN_ARRAY);
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        writeByte(BREAK);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        writeText(name);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeText(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        if (value >= 0) {
+            writeHead(UNSIGNED, value);
+        } else {
+            writeHead(NEGATIVE, -1 - value);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        float single = (float) value;
+        if (single == value || Double.isNaN(value)) {
+            writeByte(FLOAT);
+            writeBytes(Float.floatToIntBits(single), 4);
+        } else {
+            writeByte(DOUBLE);
+            writeBytes(Double.doubleToLongBits(value), 8);
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeByte(value ? TRUE : FALSE);
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        writeByte(NULL);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flush the buffer and return it to the pool
+     * The underlying stream is left open
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flushBuffer();
+        } finally {
+            POOL.offer(buffer);
+            buffer = null;
+        }
+    }
+
+    // Write a text string; unpaired surrogates become '?', as with the JSON writer
+    private void writeText(String text) throws IOException {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        writeHead(TEXT, utf8.length);
+        if (utf8.length > buffer.length - count) {
+            flushBuffer();
+            if (utf8.length > buffer.length) {
+                out.write(utf8);
+                return;
+            }
+        }
+        System.arraycopy(utf8, 0, buffer, count, utf8.length);
+        count += utf8.length;
+    }
+
+    // Write the initial byte of a major type with its argument in the shortest form
+    private void writeHead(int majorType, long argument) throws IOException {
+        if (argument < 24) {
+            writeByte(majorType | (int) argument);
+        } else if (argument < 0x100) {
+            writeByte(majorType | 24);
+            writeBytes(argument, 1);
+        } else if (argument < 0x10000) {
+            writeByte(majorType | 25);
+            writeBytes(argument, 2);
+        } else if (argument < 0x100000000L) {
+            writeByte(majorType | 26);
+            writeBytes(argument, 4);
+        } else {
+            writeByte(majorType | 27);
+            writeBytes(argument, 8);
+        }
+    }
+
+    // Write the low bytes of a value, most significant first
+    private void writeBytes(long value, int length) throws IOException {
+        if (buffer.length - count < length) {
+            flushBuffer();
+        }
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            buffer[count++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
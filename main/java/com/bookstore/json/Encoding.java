@@ -0,0 +1,60 @@
+package com.bookstore.json;
+
+import javax.ws.rs.core.MediaType;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodings of the model token stream
+ * ModelJson writes and reads models as a stream of objects, arrays, names and
+ * values; JSON and CBOR are two encodings of that stream, so the same code
+ * serves both
+ */
+public enum Encoding {
+    JSON(MediaType.APPLICATION_JSON_TYPE),
+    CBOR(ModelCborProvider.APPLICATION_CBOR_TYPE);
+
+    private final MediaType mediaType;
+
+    Encoding(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Get the encoding for a media type
+     *
+     * @param mediaType The media type, or null
+     * @return CBOR for a CBOR media type, JSON otherwise
+     */
+    public static Encoding of(MediaType mediaType) {
+        return mediaType != null && CBOR.mediaType.isCompatible(mediaType) && !mediaType.isWildcardSubtype()
+                ? CBOR : JSON;
+    }
+
+    /**
+     * Open a writer encoding onto a stream
+     * Closing the writer writes out and releases its buffer but leaves the stream open
+     *
+     * @param out The stream
+     * @return The writer
+     */
+    public JsonWriter writer(OutputStream out) {
+        return this == CBOR ? new CborWriter(out) : new JsonWriter(new Utf8Writer(out));
+    }
+
+    /**
+     * Open a reader decoding from a stream
+     *
+     * @param in The stream
+     * @return The reader
+     */
+    public JsonReader reader(InputStream in) {
+        return this == CBOR ? new CborReader(in) : new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
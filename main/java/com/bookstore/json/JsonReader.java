@@ -0,0 +1,408 @@
+package com.bookstore.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Minimal streaming (pull) JSON reader
+ * Reads one token at a time from the underlying Reader and keeps only a
+ * small nesting stack, the counterpart of JsonWriter. Malformed input is
+ * reported as an IOException naming the offending position
+ */
+public class JsonReader implements Closeable {
+
+    /**
+     * Kinds of token returned by peek()
+     */
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    // Maximum nesting depth supported
+    private static final int MAX_DEPTH = 32;
+
+    // Nesting scopes
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[1024];
+    private int pos;
+    private int limit;
+    private long offset;
+
+    private final int[] scopes = new int[MAX_DEPTH];
+    private int depth = 1;
+
+    // The token read ahead by peek(), with its text for names, strings and numbers
+    private Token peeked;
+    private String peekedText;
+    private boolean peekedBoolean;
+
+    private final StringBuilder text = new StringBuilder();
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        scopes[0] = EMPTY_DOCUMENT;
+    }
+
+    // For readers that decode the same token stream from another format; they override every method
+    protected JsonReader() {
+        this(null);
+    }
+
+    /**
+     * Get the next token without consuming it
+     *
+     * @return The next token
+     * @throws IOException if reading fails or the input is malformed
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (scopes[depth - 1]) {
+            case EMPTY_DOCUMENT:
+                scopes[depth - 1] = NONEMPTY_DOCUMENT;
+                return peekValue(nextNonWhitespace());
+            case NONEMPTY_DOCUMENT:
+                c = nextNonWhitespace();
+                if (c != -1) {
+                    throw syntaxError("Unexpected data after the JSON value");
+                }
+                return peeked = Token.END_DOCUMENT;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scopes[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a property name");
+                }
+                scopes[depth - 1] = DANGLING_NAME;
+                peekedText = readString();
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                scopes[depth - 1] = NONEMPTY_OBJECT;
+                return peekValue(nextNonWhitespace());
+            case EMPTY_ARRAY:
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = Token.END_ARRAY;
+                }
+                if (scopes[depth - 1] == NONEMPTY_ARRAY) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or ']'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                scopes[depth - 1] = NONEMPTY_ARRAY;
+                return peekValue(c);
+            default:
+                throw new IllegalStateException("Unknown scope " + scopes[depth - 1]);
+        }
+    }
+
+    /**
+     * Check whether the current object or array has another element
+     *
+     * @return true if the next token isn't the end of a container or the document
+     * @throws IOException if reading fails or the input is malformed
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return peekedText;
+    }
+
+    public String nextString() throws IOException {
+        expect(Token.STRING);
+        return peekedText;
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return peekedBoolean;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    public double nextDouble() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            return Double.parseDouble(peekedText);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + peekedText);
+        }
+    }
+
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        try {
+            return Long.parseLong(peekedText);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a whole number but was " + peekedText);
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw syntaxError("Number out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Skip the next value, including everything nested in it
+     *
+     * @throws IOException if reading fails or the input is malformed
+     */
+    public void skipValue() throws IOException {
+        int nested = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    nested++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    nested++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    nested--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    nested--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of input");
+                default:
+                    peeked = null;
+                    break;
+            }
+        } while (nested > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Read the value starting with c
+    private Token peekValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                peekedText = readString();
+                return peeked = Token.STRING;
+            case 't':
+                readLiteral("rue");
+                peekedBoolean = true;
+                return peeked = Token.BOOLEAN;
+            case 'f':
+                readLiteral("alse");
+                peekedBoolean = false;
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                readLiteral("ull");
+                return peeked = Token.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    peekedText = readNumber((char) c);
+                    return peeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void expect(Token token) throws IOException {
+        Token actual = peek();
+        if (actual != token) {
+            throw syntaxError("Expected " + token + " but was " + actual);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) throws IOException {
+        if (depth == MAX_DEPTH) {
+            throw syntaxError("Nesting too deep");
+        }
+        scopes[depth++] = scope;
+    }
+
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c == -1) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        text.append((char) c);
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        text.append(readHexChar());
+                        break;
+                    default:
+                        throw syntaxError("Invalid escape sequence");
+                }
+            } else if (c < 0x20) {
+                throw syntaxError("Unescaped control character in string");
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private char readHexChar() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw syntaxError("Invalid \\u escape");
+            }
+            value = value * 16 + digit;
+        }
+        return (char) value;
+    }
+
+    private String readNumber(char first) throws IOException {
+        text.setLength(0);
+        text.append(first);
+        while (true) {
+            int c = read();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append((char) c);
+            } else {
+                unread(c);
+                return text.toString();
+            }
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            offset += limit;
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+
+    // Push back the character just read; it is always still in the buffer
+    private void unread(int c) {
+        if (c != -1) {
+            pos--;
+        }
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at character " + (offset + pos) + ".");
+    }
+}
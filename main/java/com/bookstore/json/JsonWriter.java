@@ -0,0 +1,206 @@
+package com.bookstore.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming JSON writer
+ * Writes tokens straight to the underlying Writer and keeps only a small
+ * nesting stack, so arbitrarily long arrays can be written in bounded memory
+ */
+public class JsonWriter implements Closeable, Flushable {
+    // Maximum nesting depth supported
+    private static final int MAX_DEPTH = 32;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    // Whether the container at each depth still has no elements
+    private final boolean[] empty = new boolean[MAX_DEPTH];
+    private int depth;
+
+    // Set after name() so the following value isn't preceded by a comma
+    private boolean afterName;
+
+    // Scratch space for formatting integers
+    private final char[] digits = new char[20];
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    // For writers that encode the same token stream in another format; they override every method
+    protected JsonWriter() {
+        this.out = null;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        out.write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            out.write(Long.toString(value));
+            return this;
+        }
+
+        // Format into the scratch buffer instead of allocating a string
+        int pos = digits.length;
+        long remaining = Math.abs(value);
+        do {
+            digits[--pos] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--pos] = '-';
+        }
+        out.write(digits, pos, digits.length - pos);
+        return this;
+    }
+
+    public JsonWriter value(Long value) throws IOException {
+        return value == null ? nullValue() : value(value.longValue());
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON does not allow non-finite numbers: " + value);
+        }
+        beforeValue();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // Write the separating comma if this isn't the first element of the current container
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (empty[depth - 1]) {
+                empty[depth - 1] = false;
+            } else {
+                out.write(',');
+            }
+        }
+    }
+
+    private void push() {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting too deep.");
+        }
+        empty[depth++] = true;
+    }
+
+    // Write a quoted, escaped string
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(value, start, i - start);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\b':
+                    out.write("\\b");
+                    break;
+                case '\f':
+                    out.write("\\f");
+                    break;
+                default:
+                    out.write("\\u");
+                    out.write(HEX[(c >> 12) & 0xF]);
+                    out.write(HEX[(c >> 8) & 0xF]);
+                    out.write(HEX[(c >> 4) & 0xF]);
+                    out.write(HEX[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        out.write(value, start, length - start);
+        out.write('"');
+    }
+}
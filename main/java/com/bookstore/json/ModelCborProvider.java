@@ -0,0 +1,24 @@
+package com.bookstore.json;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * CBOR entity provider for the model classes
+ * Writes and reads the same models, with the same property names, as
+ * ModelJsonProvider, encoded as CBOR (RFC 8949) instead of JSON text. Clients
+ * choose it with Accept and Content-Type application/cbor
+ */
+@Provider
+@Produces(ModelCborProvider.APPLICATION_CBOR)
+@Consumes(ModelCborProvider.APPLICATION_CBOR)
+public class ModelCborProvider extends ModelJsonProvider {
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_CBOR_TYPE = new MediaType("application", "cbor");
+
+    public ModelCborProvider() {
+        super(Encoding.CBOR);
+    }
+}
@@ -0,0 +1,364 @@
+package com.bookstore.json;
+
+import com.bookstore.model.Author;
+import com.bookstore.model.Book;
+import com.bookstore.model.Cart;
+import com.bookstore.model.CartItem;
+import com.bookstore.model.Customer;
+import com.bookstore.model.ErrorResponse;
+import com.bookstore.model.Order;
+import com.bookstore.model.OrderItem;
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Hand-written JSON encoders and decoders for the model classes
+ * Produces exactly what the default JSON binding (JSON-B) does: properties in
+ * lexicographic order, null properties omitted and dates as ISO date-times in
+ * UTC; unknown properties are ignored when reading
+ */
+public final class ModelJson {
+
+    // How JSON-B writes a java.util.Date by default
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_DATE_TIME.withZone(ZoneId.of("UTC"));
+
+    private ModelJson() {
+    }
+
+    /**
+     * Write a book as a JSON object
+     *
+     * @param json The JSON writer
+     * @param book The book
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, Book book) throws IOException {
+        json.beginObject();
+        if (book.getAuthorId() != null) {
+            json.name("authorId").value(book.getAuthorId());
+        }
+        if (book.getId() != null) {
+            json.name("id").value(book.getId());
+        }
+        if (book.getIsbn() != null) {
+            json.name("isbn").value(book.getIsbn());
+        }
+        json.name("price").value(book.getPrice());
+        json.name("publicationYear").value(book.getPublicationYear());
+        json.name("stock").value(book.getStock());
+        if (book.getTitle() != null) {
+            json.name("title").value(book.getTitle());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Write an author as a JSON object
+     *
+     * @param json The JSON writer
+     * @param author The author
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, Author author) throws IOException {
+        json.beginObject();
+        if (author.getBiography() != null) {
+            json.name("biography").value(author.getBiography());
+        }
+        if (author.getId() != null) {
+            json.name("id").value(author.getId());
+        }
+        if (author.getName() != null) {
+            json.name("name").value(author.getName());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Write a customer as a JSON object
+     *
+     * @param json The JSON writer
+     * @param customer The customer
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, Customer customer) throws IOException {
+        json.beginObject();
+        if (customer.getEmail() != null) {
+            json.name("email").value(customer.getEmail());
+        }
+        if (customer.getId() != null) {
+            json.name("id").value(customer.getId());
+        }
+        if (customer.getName() != null) {
+            json.name("name").value(customer.getName());
+        }
+        if (customer.getPassword() != null) {
+            json.name("password").value(customer.getPassword());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Write a cart and its items as a JSON object
+     *
+     * @param json The JSON writer
+     * @param cart The cart
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, Cart cart) throws IOException {
+        json.beginObject();
+        if (cart.getCustomerId() != null) {
+            json.name("customerId").value(cart.getCustomerId());
+        }
+        if (cart.getItems() != null) {
+            json.name("items").beginArray();
+            for (CartItem item : cart.getItems()) {
+                write(json, item);
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    /**
+     * Write a cart item as a JSON object
+     *
+     * @param json The JSON writer
+     * @param item The cart item
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, CartItem item) throws IOException {
+        json.beginObject();
+        if (item.getBookId() != null) {
+            json.name("bookId").value(item.getBookId());
+        }
+        json.name("quantity").value(item.getQuantity());
+        json.endObject();
+    }
+
+    /**
+     * Write an order and its items as a JSON object
+     * The order date is written as an ISO date-time in UTC, such as
+     * 2024-01-31T12:00:00.5Z[UTC]
+     *
+     * @param json The JSON writer
+     * @param order The order
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, Order order) throws IOException {
+        json.beginObject();
+        if (order.getCustomerId() != null) {
+            json.name("customerId").value(order.getCustomerId());
+        }
+        if (order.getId() != null) {
+            json.name("id").value(order.getId());
+        }
+        if (order.getItems() != null) {
+            json.name("items").beginArray();
+            for (OrderItem item : order.getItems()) {
+                write(json, item);
+            }
+            json.endArray();
+        }
+        if (order.getOrderDate() != null) {
+            json.name("orderDate").value(DATE_FORMAT.format(order.getOrderDate().toInstant()));
+        }
+        json.name("totalAmount").value(order.getTotalAmount());
+        json.endObject();
+    }
+
+    /**
+     * Write an order item as a JSON object
+     *
+     * @param json The JSON writer
+     * @param item The order item
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, OrderItem item) throws IOException {
+        json.beginObject();
+        if (item.getBookId() != null) {
+            json.name("bookId").value(item.getBookId());
+        }
+        if (item.getBookTitle() != null) {
+            json.name("bookTitle").value(item.getBookTitle());
+        }
+        json.name("price").value(item.getPrice());
+        json.name("quantity").value(item.getQuantity());
+        json.name("totalPrice").value(item.getTotalPrice());
+        json.endObject();
+    }
+
+    /**
+     * Write an error response as a JSON object
+     *
+     * @param json The JSON writer
+     * @param error The error response
+     * @throws IOException if writing fails
+     */
+    public static void write(JsonWriter json, ErrorResponse error) throws IOException {
+        json.beginObject();
+        if (error.getError() != null) {
+            json.name("error").value(error.getError());
+        }
+        if (error.getMessage() != null) {
+            json.name("message").value(error.getMessage());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Read a book from a JSON object
+     * Null values leave the property at its default
+     *
+     * @param json The JSON reader
+     * @return The book
+     * @throws IOException if reading fails or the JSON doesn't describe a book
+     */
+    public static Book readBook(JsonReader json) throws IOException {
+        Book book = new Book();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonReader.Token.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    book.setId(json.nextLong());
+                    break;
+                case "title":
+                    book.setTitle(json.nextString());
+                    break;
+                case "authorId":
+                    book.setAuthorId(json.nextLong());
+                    break;
+                case "isbn":
+                    book.setIsbn(json.nextString());
+                    break;
+                case "publicationYear":
+                    book.setPublicationYear(json.nextInt());
+                    break;
+                case "price":
+                    book.setPrice(json.nextDouble());
+                    break;
+                case "stock":
+                    book.setStock(json.nextInt());
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return book;
+    }
+
+    /**
+     * Read an author from a JSON object
+     * Null values leave the property at its default
+     *
+     * @param json The JSON reader
+     * @return The author
+     * @throws IOException if reading fails or the JSON doesn't describe an author
+     */
+    public static Author readAuthor(JsonReader json) throws IOException {
+        Author author = new Author();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonReader.Token.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    author.setId(json.nextLong());
+                    break;
+                case "name":
+                    author.setName(json.nextString());
+                    break;
+                case "biography":
+                    author.setBiography(json.nextString());
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return author;
+    }
+
+    /**
+     * Read a customer from a JSON object
+     * Null values leave the property at its default
+     *
+     * @param json The JSON reader
+     * @return The customer
+     * @throws IOException if reading fails or the JSON doesn't describe a customer
+     */
+    public static Customer readCustomer(JsonReader json) throws IOException {
+        Customer customer = new Customer();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonReader.Token.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    customer.setId(json.nextLong());
+                    break;
+                case "name":
+                    customer.setName(json.nextString());
+                    break;
+                case "email":
+                    customer.setEmail(json.nextString());
+                    break;
+                case "password":
+                    customer.setPassword(json.nextString());
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return customer;
+    }
+
+    /**
+     * Read a cart item from a JSON object
+     * Null values leave the property at its default
+     *
+     * @param json The JSON reader
+     * @return The cart item
+     * @throws IOException if reading fails or the JSON doesn't describe a cart item
+     */
+    public static CartItem readCartItem(JsonReader json) throws IOException {
+        CartItem item = new CartItem();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (json.peek() == JsonReader.Token.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "bookId":
+                    item.setBookId(json.nextLong());
+                    break;
+                case "quantity":
+                    item.setQuantity(json.nextInt());
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+        }
+        json.endObject();
+        return item;
+    }
+}
@@ -0,0 +1,172 @@
+package com.bookstore.json;
+
+import com.bookstore.exception.InvalidInputException;
+import com.bookstore.model.Author;
+import com.bookstore.model.Book;
+import com.bookstore.model.Cart;
+import com.bookstore.model.CartItem;
+import com.bookstore.model.Customer;
+import com.bookstore.model.ErrorResponse;
+import com.bookstore.model.Order;
+import com.bookstore.model.OrderItem;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JSON entity provider for the model classes
+ * Replaces the reflective JSON binding for models and collections of models:
+ * entities are written by ModelJson through a pooled UTF-8 writer straight
+ * to the entity stream, and request bodies are read by ModelJson. The JSON
+ * is the same as the default binding's, so clients see no difference
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ModelJsonProvider implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
+    // Model types written as JSON, alone or in a collection
+    private static final Set<Class<?>> WRITABLE = new HashSet<>(Arrays.asList(
+            Book.class, Author.class, Customer.class, Cart.class, CartItem.class,
+            Order.class, OrderItem.class, ErrorResponse.class));
+
+    // Model types accepted as request bodies
+    private static final Set<Class<?>> READABLE = new HashSet<>(Arrays.asList(
+            Book.class, Author.class, Customer.class, CartItem.class));
+
+    private final Encoding encoding;
+
+    public ModelJsonProvider() {
+        this(Encoding.JSON);
+    }
+
+    // For providers of the same models in another encoding
+    ModelJsonProvider(Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        if (WRITABLE.contains(type)) {
+            return true;
+        }
+        if (!Collection.class.isAssignableFrom(type) || !(genericType instanceof ParameterizedType)) {
+            return false;
+        }
+
+        // A list in a Response only has its element type when wrapped in a GenericEntity; raw ones go to the default binding
+        Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        return arguments.length == 1 && WRITABLE.contains(arguments[0]);
+    }
+
+    @Override
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        JsonWriter writer = encoding.writer(entityStream);
+        try {
+            write(writer, entity);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write a model, or a collection of models, as JSON
+     *
+     * @param json The JSON writer
+     * @param entity The entity
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the entity isn't a model
+     */
+    static void write(JsonWriter json, Object entity) throws IOException {
+        if (entity instanceof Book) {
+            ModelJson.write(json, (Book) entity);
+        } else if (entity instanceof Collection) {
+            json.beginArray();
+            for (Object element : (Collection<?>) entity) {
+                write(json, element);
+            }
+            json.endArray();
+        } else if (entity instanceof Author) {
+            ModelJson.write(json, (Author) entity);
+        } else if (entity instanceof Cart) {
+            ModelJson.write(json, (Cart) entity);
+        } else if (entity instanceof Order) {
+            ModelJson.write(json, (Order) entity);
+        } else if (entity instanceof Customer) {
+            ModelJson.write(json, (Customer) entity);
+        } else if (entity instanceof ErrorResponse) {
+            ModelJson.write(json, (ErrorResponse) entity);
+        } else if (entity instanceof CartItem) {
+            ModelJson.write(json, (CartItem) entity);
+        } else if (entity instanceof OrderItem) {
+            ModelJson.write(json, (OrderItem) entity);
+        } else if (entity == null) {
+            json.nullValue();
+        } else {
+            throw new IllegalArgumentException("No JSON writer for " + entity.getClass().getName());
+        }
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return READABLE.contains(type);
+    }
+
+    // An empty body or a null reads as null, as with the default binding; malformed input is invalid input
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        PushbackInputStream body = new PushbackInputStream(entityStream);
+        int first = body.read();
+        if (first == -1) {
+            return null;
+        }
+        body.unread(first);
+
+        JsonReader json = encoding.reader(body);
+        try {
+            if (json.peek() == JsonReader.Token.NULL) {
+                return null;
+            }
+            Class<?> model = type;
+            Object entity;
+            if (model == Book.class) {
+                entity = ModelJson.readBook(json);
+            } else if (model == Author.class) {
+                entity = ModelJson.readAuthor(json);
+            } else if (model == Customer.class) {
+                entity = ModelJson.readCustomer(json);
+            } else {
+                entity = ModelJson.readCartItem(json);
+            }
+
+            // Reject anything after the object
+            json.peek();
+            return entity;
+        } catch (IOException e) {
+            throw new InvalidInputException("Malformed " + encoding + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.bookstore.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Writer that encodes UTF-8 straight into an OutputStream
+ * Unlike OutputStreamWriter it needs no charset encoder or intermediate char
+ * buffer: characters are encoded into a byte buffer borrowed from a small
+ * shared pool, which is handed back on close. Closing does not close the
+ * underlying stream, so it can be used on a response entity stream. Unpaired
+ * surrogates are written as '?', like OutputStreamWriter does
+ */
+public final class Utf8Writer extends Writer {
+    private static final int BUFFER_SIZE = 8192;
+
+    // Idle buffers; writers allocate a fresh one when the pool is empty
+    private static final ArrayBlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(64);
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int count;
+
+    // High surrogate waiting for its low half, or 0
+    private char pendingSurrogate;
+
+    public Utf8Writer(OutputStream out) {
+        this.out = out;
+        byte[] pooled = POOL.poll();
+        this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            encode(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = text.charAt(i);
+
+            // ASCII goes straight into the buffer
+            if (c < 0x80 && pendingSurrogate == 0 && count < buffer.length) {
+                buffer[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Write out anything buffered and return the buffer to the pool
+     * The underlying stream is neither flushed nor closed, so closing the
+     * writer at the end of a body is not taken as a request to send it early
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            if (pendingSurrogate != 0) {
+                pendingSurrogate = 0;
+                put('?');
+            }
+            flushBuffer();
+        } finally {
+            POOL.offer(buffer);
+            buffer = null;
+        }
+    }
+
+    // Encode one UTF-16 unit, pairing surrogates
+    private void encode(char c) throws IOException {
+        if (pendingSurrogate != 0) {
+            char high = pendingSurrogate;
+            pendingSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ensure(4);
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            put('?');
+        }
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            ensure(2);
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            put('?');
+        } else {
+            ensure(3);
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    // Write one ASCII character
+    private void put(char c) throws IOException {
+        ensure(1);
+        buffer[count++] = (byte) c;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (count + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
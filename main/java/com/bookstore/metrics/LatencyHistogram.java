@@ -0,0 +1,131 @@
+package com.bookstore.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram
+ * Latencies are counted in microseconds. Below 16 microseconds every value
+ * has its own bucket; above that each power of two is split into 16 equal
+ * buckets, so a bucket is never wider than 1/16 of its values (about 6%).
+ * Recording is one atomic increment plus an add to the running sum, and
+ * allocates nothing. Values beyond about 19 hours fall into the last bucket
+ */
+public final class LatencyHistogram {
+    // Buckets per power of two, as a power of two
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Largest power of two tracked, in microseconds
+    private static final int MAX_EXPONENT = 36;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sumNanos = new LongAdder();
+
+    /**
+     * Record one latency
+     *
+     * @param nanos The latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value / 1000));
+        sumNanos.add(value);
+    }
+
+    /**
+     * Get the number of recorded latencies at or below each bound
+     * A bucket counts towards a bound only if all of it lies at or below the
+     * bound, so the counts may lag by up to one bucket width
+     *
+     * @param boundsMicros Increasing bounds in microseconds
+     * @param cumulative Receives the count for each bound
+     * @return The total number of recorded latencies
+     */
+    public long cumulativeCounts(long[] boundsMicros, long[] cumulative) {
+        long total = 0;
+        int bound = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long upper = upperBound(i);
+            while (bound < boundsMicros.length && upper > boundsMicros[bound] + 1) {
+                cumulative[bound++] = total;
+            }
+            total += counts.get(i);
+        }
+        while (bound < boundsMicros.length) {
+            cumulative[bound++] = total;
+        }
+        return total;
+    }
+
+    /**
+     * Get the latency that a share of the recorded latencies are at or below
+     * The result is the largest value of the bucket the latency falls in, so
+     * it overstates by less than one bucket width
+     *
+     * @param percentile The share, from 0 to 100
+     * @return The latency in microseconds, or 0 if nothing was recorded
+     */
+    public long percentileMicros(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBound(i) - 1;
+            }
+        }
+        return upperBound(BUCKETS - 1) - 1;
+    }
+
+    /**
+     * Get the number of recorded latencies
+     *
+     * @return The count
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Get the sum of all recorded latencies
+     *
+     * @return The sum in nanoseconds
+     */
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    // Bucket of a value in microseconds
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    // Exclusive upper bound of a bucket in microseconds
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index + 1;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return (subBucket + 1) << shift;
+    }
+}
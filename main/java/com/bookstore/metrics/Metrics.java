@@ -0,0 +1,142 @@
+package com.bookstore.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide request metrics, exposed in the Prometheus text format
+ * Each route (HTTP method and path template) has a latency histogram and a
+ * counter per status code; exceptions mapped to error responses are counted
+ * by type. Routes and exception types are registered on first use, after
+ * which recording only touches atomic counters
+ */
+public final class Metrics {
+    // Histogram bucket bounds exported to Prometheus, in seconds and microseconds
+    private static final String[] BOUNDS = {
+        "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    private static final long[] BOUNDS_MICROS = {
+        500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+
+    // Status codes are counted in an array indexed from 100
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private static final Map<String, Route> ROUTES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, LongAdder> EXCEPTIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Latency and status counts of one route
+     */
+    public static final class Route {
+        private final String method;
+        private final String path;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS - MIN_STATUS + 1);
+
+        Route(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        /**
+         * Record one completed request
+         *
+         * @param nanos The time from receiving the request to sending the response headers
+         * @param status The response status code
+         */
+        public void record(long nanos, int status) {
+            latency.record(nanos);
+            if (status >= MIN_STATUS && status <= MAX_STATUS) {
+                statuses.incrementAndGet(status - MIN_STATUS);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Get the metrics of a route, registering it on first use
+     *
+     * @param method The HTTP method
+     * @param path The path template
+     * @return The route's metrics
+     */
+    public static Route route(String method, String path) {
+        return ROUTES.computeIfAbsent(method + " " + path, key -> new Route(method, path));
+    }
+
+    /**
+     * Get the counter of an exception type mapped to error responses, registering it on first use
+     *
+     * @param type The exception type
+     * @return The counter, to increment once per mapped exception
+     */
+    public static LongAdder exceptionCounter(Class<?> type) {
+        return EXCEPTIONS.computeIfAbsent(type, key -> new LongAdder());
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format (version 0.0.4)
+     *
+     * @param out The writer
+     * @throws IOException if writing fails
+     */
+    public static void write(Writer out) throws IOException {
+        List<Route> routes = new ArrayList<>(ROUTES.values());
+        routes.sort(Comparator.comparing((Route route) -> route.path).thenComparing(route -> route.method));
+
+        out.write("# HELP bookstore_http_request_duration_seconds Time to handle HTTP requests, by route.\n");
+        out.write("# TYPE bookstore_http_request_duration_seconds histogram\n");
+        long[] cumulative = new long[BOUNDS.length];
+        for (Route route : routes) {
+            String labels = "method=\"" + escape(route.method) + "\",route=\"" + escape(route.path) + "\"";
+            long count = route.latency.cumulativeCounts(BOUNDS_MICROS, cumulative);
+            for (int i = 0; i < BOUNDS.length; i++) {
+                out.write("bookstore_http_request_duration_seconds_bucket{" + labels + ",le=\"" + BOUNDS[i] + "\"} "
+                        + cumulative[i] + "\n");
+            }
+            out.write("bookstore_http_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} " + count + "\n");
+            out.write("bookstore_http_request_duration_seconds_sum{" + labels + "} "
+                    + route.latency.getSumNanos() / 1e9 + "\n");
+            out.write("bookstore_http_request_duration_seconds_count{" + labels + "} " + count + "\n");
+        }
+
+        out.write("# HELP bookstore_http_responses_total HTTP responses, by route and status code.\n");
+        out.write("# TYPE bookstore_http_responses_total counter\n");
+        for (Route route : routes) {
+            String labels = "method=\"" + escape(route.method) + "\",route=\"" + escape(route.path) + "\"";
+            for (int i = 0; i < route.statuses.length(); i++) {
+                long count = route.statuses.get(i);
+                if (count > 0) {
+                    out.write("bookstore_http_responses_total{" + labels + ",status=\"" + (MIN_STATUS + i) + "\"} "
+                            + count + "\n");
+                }
+            }
+        }
+
+        out.write("# HELP bookstore_exceptions_total Exceptions mapped to error responses, by type.\n");
+        out.write("# TYPE bookstore_exceptions_total counter\n");
+        List<Map.Entry<Class<?>, LongAdder>> exceptions = new ArrayList<>(EXCEPTIONS.entrySet());
+        exceptions.sort(Comparator.comparing(entry -> entry.getKey().getName()));
+        for (Map.Entry<Class<?>, LongAdder> entry : exceptions) {
+            out.write("bookstore_exceptions_total{type=\"" + escape(entry.getKey().getName()) + "\"} "
+                    + entry.getValue().sum() + "\n");
+        }
+    }
+
+    // Escape a label value
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
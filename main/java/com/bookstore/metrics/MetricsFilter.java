@@ -0,0 +1,142 @@
+package com.bookstore.metrics;
+
+import javax.annotation.Priority;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the latency and status code of every request against its route
+ * The route is the path template of the matched resource method, such as
+ * GET /books/{id}, so all books share one series; requests that match no
+ * resource are recorded under "unmatched". Latency runs from the request
+ * filter until the response entity has been written (or, for responses
+ * without one, the response filter), so it includes serialization,
+ * compression and, for asynchronous resources, the time the stage took to
+ * complete. The filter runs before, and its writer interceptor around, every
+ * other provider
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION)
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+    // Request property holding the request's Timing
+    private static final String TIMING_PROPERTY = MetricsFilter.class.getName() + ".timing";
+
+    private static final Map<Method, Metrics.Route> ROUTES = new ConcurrentHashMap<>();
+
+    /**
+     * What is known about a request until its latency is recorded
+     */
+    private static final class Timing {
+        // System.nanoTime() at which the request arrived
+        private final long start;
+        private Metrics.Route route;
+        private int status;
+
+        Timing(long start) {
+            this.start = start;
+        }
+
+        void record() {
+            route.record(System.nanoTime() - start, status);
+        }
+    }
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(TIMING_PROPERTY, new Timing(System.nanoTime()));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object property = request.getProperty(TIMING_PROPERTY);
+        if (!(property instanceof Timing)) {
+            return;
+        }
+        Timing timing = (Timing) property;
+        Method method = resourceInfo.getResourceMethod();
+        timing.route = method != null
+                ? ROUTES.computeIfAbsent(method, MetricsFilter::route)
+                : Metrics.route(request.getMethod(), "unmatched");
+        timing.status = response.getStatus();
+
+        // Responses with an entity are recorded once it has been written
+        if (!response.hasEntity() || HttpMethod.HEAD.equals(request.getMethod())) {
+            request.removeProperty(TIMING_PROPERTY);
+            timing.record();
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object property = context.getProperty(TIMING_PROPERTY);
+        if (!(property instanceof Timing) || ((Timing) property).route == null) {
+            context.proceed();
+            return;
+        }
+        context.removeProperty(TIMING_PROPERTY);
+        try {
+            context.proceed();
+        } finally {
+            ((Timing) property).record();
+        }
+    }
+
+    // The route of a resource method, from its HTTP method and @Path annotations
+    private static Metrics.Route route(Method method) {
+        StringBuilder path = new StringBuilder();
+        appendPath(path, method.getDeclaringClass().getAnnotation(Path.class));
+        appendPath(path, method.getAnnotation(Path.class));
+        return Metrics.route(httpMethod(method), path.length() == 0 ? "/" : path.toString());
+    }
+
+    private static void appendPath(StringBuilder path, Path annotation) {
+        if (annotation == null) {
+            return;
+        }
+        String value = annotation.value();
+        if (!value.startsWith("/")) {
+            path.append('/');
+        }
+        path.append(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+    }
+
+    private static String httpMethod(Method method) {
+        if (method.isAnnotationPresent(GET.class)) {
+            return "GET";
+        } else if (method.isAnnotationPresent(POST.class)) {
+            return "POST";
+        } else if (method.isAnnotationPresent(PUT.class)) {
+            return "PUT";
+        } else if (method.isAnnotationPresent(DELETE.class)) {
+            return "DELETE";
+        } else if (method.isAnnotationPresent(HEAD.class)) {
+            return "HEAD";
+        } else if (method.isAnnotationPresent(OPTIONS.class)) {
+            return "OPTIONS";
+        }
+        return "ANY";
+    }
+}
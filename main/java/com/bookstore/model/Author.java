@@ -4,15 +4,21 @@
  */
 package com.bookstore.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 
 /**
  * Represents an author in the bookstore system
  * Contains information about the author such as name and biography
+ * The version advances when the author is stored
  */
 public class Author {
     private Long id;
     private String name;
     private String biography;
+    
+    // Not a bean property, so it is never part of the JSON
+    private final AtomicLong version = new AtomicLong(Versions.next());
 
     // Default constructor
     public Author() {
@@ -49,4 +55,13 @@ public class Author {
     public void setBiography(String biography) {
         this.biography = biography;
     }
+
+    // Version operations
+    public long version() {
+        return version.get();
+    }
+
+    public void touch() {
+        Versions.advance(version);
+    }
 }
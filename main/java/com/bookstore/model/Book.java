@@ -1,17 +1,33 @@
 // Book.java
 package com.bookstore.model;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
 /**
  * Represents a book in the bookstore
+ * Stock is updated with compare-and-set so concurrent checkouts never lose a decrement
+ * The version advances after every stock change, and when the book is stored
  */
 public class Book {
+    // Field updater for lock-free stock changes
+    private static final AtomicIntegerFieldUpdater<Book> STOCK =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "stock");
+    
+    // Field updater for advancing the version
+    private static final AtomicLongFieldUpdater<Book> VERSION =
+            AtomicLongFieldUpdater.newUpdater(Book.class, "version");
+    
     private Long id;
     private String title;
     private Long authorId;
     private String isbn;
     private int publicationYear;
     private double price;
-    private int stock;
+    private volatile int stock;
+    
+    // Not a bean property, so it is never part of the JSON
+    private volatile long version = Versions.next();
     
     // Constructors
     public Book() {
@@ -84,4 +100,28 @@ public class Book {
     public void setStock(int stock) {
         this.stock = stock;
     }
+    
+    // Version operations
+    public long version() {
+        return version;
+    }
+    
+    public void touch() {
+        VERSION.accumulateAndGet(this, Versions.next(), Math::max);
+    }
+    
+    // Atomic stock operations; the version moves after the stock so a reader that sees it sees the stock
+    public boolean compareAndSetStock(int expectedStock, int newStock) {
+        if (!STOCK.compareAndSet(this, expectedStock, newStock)) {
+            return false;
+        }
+        touch();
+        return true;
+    }
+    
+    public int addStock(int delta) {
+        int stock = STOCK.addAndGet(this, delta);
+        touch();
+        return stock;
+    }
 }
\ No newline at end of file
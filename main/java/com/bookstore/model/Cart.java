@@ -5,27 +5,34 @@
 
 package com.bookstore.model;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
  * Represents a shopping cart in the bookstore system
  * Contains a list of cart items and associated customer ID
+ * Items are held in a copy-on-write list so the cart can be serialized
+ * while another request is modifying it
+ * The version advances after every change made through the helper methods
  */
 public class Cart {
     private Long customerId;
     private List<CartItem> items;
+    
+    // Not a bean property, so it is never part of the JSON
+    private final AtomicLong version = new AtomicLong(Versions.next());
 
     // Default constructor
     public Cart() {
-        this.items = new ArrayList<>();
+        this.items = new CopyOnWriteArrayList<>();
     }
 
     // Parameterized constructor
     public Cart(Long customerId) {
         this.customerId = customerId;
-        this.items = new ArrayList<>();
+        this.items = new CopyOnWriteArrayList<>();
     }
 
     // Getters and Setters
@@ -43,6 +50,16 @@ public class Cart {
 
     public void setItems(List<CartItem> items) {
         this.items = items;
+        touch();
+    }
+
+    // Version operations
+    public long version() {
+        return version.get();
+    }
+
+    public void touch() {
+        Versions.advance(version);
     }
 
     // Helper methods
@@ -52,23 +69,33 @@ public class Cart {
             if (existingItem.getBookId().equals(item.getBookId())) {
                 // Update quantity of existing item
                 existingItem.setQuantity(existingItem.getQuantity() + item.getQuantity());
+                touch();
                 return;
             }
         }
         // Add new item to the cart
         items.add(item);
+        touch();
     }
 
     public void updateItem(Long bookId, int quantity) {
         for (CartItem item : items) {
             if (item.getBookId().equals(bookId)) {
                 item.setQuantity(quantity);
+                touch();
                 return;
             }
         }
     }
 
     public void removeItem(Long bookId) {
-        items.removeIf(item -> item.getBookId().equals(bookId));
+        if (items.removeIf(item -> item.getBookId().equals(bookId))) {
+            touch();
+        }
+    }
+
+    public void clear() {
+        items.clear();
+        touch();
     }
 }
\ No newline at end of file
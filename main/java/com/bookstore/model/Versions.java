@@ -0,0 +1,36 @@
+package com.bookstore.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide source of entity versions
+ * Every version handed out is unique and greater than all earlier ones, so an
+ * entity that is replaced or changed never repeats a version it (or the
+ * instance it replaced) already had. Versions restart with the process
+ */
+public final class Versions {
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private Versions() {
+    }
+
+    /**
+     * Get a new version
+     *
+     * @return A version greater than every version issued before
+     */
+    public static long next() {
+        return COUNTER.incrementAndGet();
+    }
+
+    /**
+     * Advance a version holder past a change that has just been made
+     * The holder never moves backwards, even when changes race
+     *
+     * @param version The version holder
+     * @return The new version
+     */
+    public static long advance(AtomicLong version) {
+        return version.accumulateAndGet(next(), Math::max);
+    }
+}
@@ -0,0 +1,123 @@
+package com.bookstore.persistence;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * DataInput reading straight from a ByteBuffer (typically a memory-mapped file region)
+ * Avoids the stream and copy layers of DataInputStream when loading snapshots
+ */
+class ByteBufferDataInput implements DataInput {
+    private final ByteBuffer buffer;
+
+    ByteBufferDataInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws EOFException {
+        readFully(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readFully(byte[] bytes, int offset, int length) throws EOFException {
+        try {
+            buffer.get(bytes, offset, length);
+        } catch (BufferUnderflowException e) {
+            throw eof();
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws EOFException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws EOFException {
+        try {
+            return buffer.get();
+        } catch (BufferUnderflowException e) {
+            throw eof();
+        }
+    }
+
+    @Override
+    public int readUnsignedByte() throws EOFException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws EOFException {
+        try {
+            return buffer.getShort();
+        } catch (BufferUnderflowException e) {
+            throw eof();
+        }
+    }
+
+    @Override
+    public int readUnsignedShort() throws EOFException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws EOFException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws EOFException {
+        try {
+            return buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw eof();
+        }
+    }
+
+    @Override
+    public long readLong() throws EOFException {
+        try {
+            return buffer.getLong();
+        } catch (BufferUnderflowException e) {
+            throw eof();
+        }
+    }
+
+    @Override
+    public float readFloat() throws EOFException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws EOFException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("readLine is not supported.");
+    }
+
+    @Override
+    public String readUTF() {
+        throw new UnsupportedOperationException("readUTF is not supported; use RecordCodec.readString.");
+    }
+
+    private static EOFException eof() {
+        return new EOFException("Unexpected end of snapshot data.");
+    }
+}
@@ -0,0 +1,569 @@
+package com.bookstore.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of DataService mutations
+ *
+ * The journal is a sequence of numbered segment files in one directory.
+ * Each segment has an 8 byte header (magic, version) followed by records of
+ * the form [int length][int crc32][byte type][payload]. A torn or corrupt
+ * tail left by a crash is detected by the length/CRC check and truncated on
+ * replay. rotate() closes the active segment so a snapshot can cover it, after
+ * which the covered segments are deleted.
+ *
+ * Appends only encode into an in-memory buffer under a short lock, so they
+ * can safely be made while an entity is locked. Durability is handled
+ * separately by sync(), according to the configured policy:
+ * - PER_OP: every record is written and fsynced before append returns
+ * - GROUP: sync() writes and fsyncs everything appended so far; callers
+ *   that arrive while an fsync is running are covered by the next one
+ * - INTERVAL: a background thread fsyncs every few milliseconds and sync()
+ *   returns immediately, trading a small loss window for latency
+ *
+ * A failed write or fsync leaves it unknown which records reached the disk,
+ * so the journal stops there: the failed batch is never reported durable and
+ * every later append, sync or flush throws until the process restarts and
+ * replays what did survive
+ */
+public class Journal implements Closeable {
+
+    /**
+     * When appended records are forced to disk
+     */
+    public enum SyncPolicy {
+        PER_OP,
+        GROUP,
+        INTERVAL
+    }
+
+    /**
+     * Encodes a record payload
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Applies a replayed record
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void apply(RecordType type, DataInput in) throws IOException;
+    }
+
+    // Segment file header
+    private static final int MAGIC = 0x42534a4c; // "BSJL"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+
+    // Record header: length + crc
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // Upper bound on a single record, used to reject garbage lengths on replay
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(Journal.class.getName());
+
+    // Segment file naming
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+
+    private final Path directory;
+    private final SyncPolicy policy;
+
+    // Active segment, replaced by rotate() while both locks are held
+    private FileChannel channel;
+    private long segment;
+
+    // Guards pending, spare, scratch, appendedSeq and segmentRecords
+    private final Object appendLock = new Object();
+
+    // Held by the single thread writing a batch to disk
+    private final Object flushLock = new Object();
+
+    private RecordBuffer pending = new RecordBuffer(BUFFER_SIZE);
+    private RecordBuffer spare = new RecordBuffer(BUFFER_SIZE);
+    private final RecordBuffer scratch = new RecordBuffer(1024);
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private final CRC32 crc = new CRC32();
+
+    private long appendedSeq;
+    private volatile long durableSeq;
+
+    // The first write failure; once set, nothing more is accepted
+    private volatile IOException failure;
+
+    // Records in the active segment, so an idle journal isn't rotated
+    private long segmentRecords;
+
+    private final ScheduledExecutorService flusher;
+
+    // Package-private so tests can supply the channel
+    Journal(Path directory, SyncPolicy policy, long intervalMillis, long segment, FileChannel channel) {
+        this.directory = directory;
+        this.policy = policy;
+        this.segment = segment;
+        this.channel = channel;
+        if (policy == SyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Open the journal in a directory, continuing its latest segment
+     * Call replay() before appending so a torn tail is truncated first
+     *
+     * @param directory The journal directory
+     * @param policy The fsync policy
+     * @param intervalMillis Flush interval for the INTERVAL policy
+     * @return The opened journal
+     * @throws IOException if the segment can't be opened or has a bad header
+     */
+    public static Journal open(Path directory, SyncPolicy policy, long intervalMillis) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments(directory);
+        long segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        return new Journal(directory, policy, intervalMillis, segment, openSegment(directory, segment));
+    }
+
+    /**
+     * Replay every intact record in the segments numbered fromSegment or above
+     * A torn or corrupt tail of the active segment is truncated so new records
+     * follow the last good one. A closed segment may only be torn when no later
+     * segment holds records (a crash while rotating); any other damage to a
+     * closed segment fails the replay rather than apply later records on top
+     * of missing ones
+     *
+     * @param fromSegment The first segment to replay
+     * @param handler Applies each record
+     * @return The number of records replayed
+     * @throws IOException if a segment can't be read or a closed segment is corrupt
+     */
+    public long replay(long fromSegment, RecordHandler handler) throws IOException {
+        synchronized (flushLock) {
+            long count = 0;
+            List<Long> segments = listSegments(directory);
+            for (int i = 0; i < segments.size(); i++) {
+                long closed = segments.get(i);
+                if (closed < fromSegment || closed >= segment) {
+                    continue;
+                }
+                try (FileChannel in = FileChannel.open(segmentFile(directory, closed),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long[] result = replaySegment(in, handler);
+                    count += result[1];
+                    if (in.size() > result[0]) {
+                        // rotate() forces a closed segment before anything after it becomes durable, so a
+                        // torn tail can only come from a crash mid-rotation, with nothing written since
+                        if (hasRecordsAfter(segments, i)) {
+                            throw corruptSegment(closed, result[0], in.size());
+                        }
+                        LOGGER.log(Level.WARNING, "Truncating torn journal segment {0} at byte {1} of {2}.",
+                                new Object[] {closed, result[0], in.size()});
+                        in.truncate(result[0]);
+                        in.force(true);
+                    }
+                }
+            }
+
+            // The active segment: truncate anything after the last intact record
+            if (segment >= fromSegment) {
+                long[] result = replaySegment(channel, handler);
+                count += result[1];
+                if (channel.size() > result[0]) {
+                    channel.truncate(result[0]);
+                    channel.force(true);
+                }
+                channel.position(result[0]);
+                synchronized (appendLock) {
+                    segmentRecords = result[1];
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Replay the closed segments in a range without touching the active one
+     * Used to build a snapshot in the background while appends continue
+     *
+     * @param fromSegment The first segment to replay
+     * @param toSegment The last segment to replay; must already be closed by rotate()
+     * @param handler Applies each record
+     * @return The number of records replayed
+     * @throws IOException if a segment can't be read or is corrupt
+     */
+    public long replayClosed(long fromSegment, long toSegment, RecordHandler handler) throws IOException {
+        long count = 0;
+        for (long closed : listSegments(directory)) {
+            if (closed >= fromSegment && closed <= toSegment && closed < getSegment()) {
+                try (FileChannel in = FileChannel.open(segmentFile(directory, closed), StandardOpenOption.READ)) {
+                    long[] result = replaySegment(in, handler);
+                    count += result[1];
+                    if (in.size() > result[0]) {
+                        throw corruptSegment(closed, result[0], in.size());
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Close the active segment and start a new one
+     * Everything appended before the call ends up in the closed segment
+     *
+     * @return The number of the closed segment, or -1 if it was empty and left active
+     * @throws IOException if the new segment can't be created
+     */
+    public long rotate() throws IOException {
+        synchronized (flushLock) {
+            FileChannel next;
+            long closed;
+            synchronized (appendLock) {
+                if (segmentRecords == 0) {
+                    return -1;
+                }
+                closed = segment;
+            }
+
+            // Write everything appended so far into the segment being closed
+            flushAll();
+
+            next = openSegment(directory, closed + 1);
+            FileChannel previous;
+            synchronized (appendLock) {
+                // Records appended since flushAll() are still pending and will go to the new segment
+                previous = channel;
+                channel = next;
+                segment = closed + 1;
+                segmentRecords = appendedSeq - durableSeq;
+            }
+            previous.force(true);
+            previous.close();
+            return closed;
+        }
+    }
+
+    /**
+     * Delete closed segments once a snapshot covers them
+     *
+     * @param throughSegment The last segment covered by the snapshot
+     * @throws IOException if a segment can't be deleted
+     */
+    public void deleteThrough(long throughSegment) throws IOException {
+        for (long closed : listSegments(directory)) {
+            if (closed <= throughSegment && closed < getSegment()) {
+                Files.deleteIfExists(segmentFile(directory, closed));
+            }
+        }
+    }
+
+    /**
+     * Append a record
+     * Only encodes into memory (except under PER_OP), so it's cheap enough to
+     * call while an entity is locked; call sync() afterwards, outside any lock
+     *
+     * @param type The record type
+     * @param writer Encodes the payload
+     * @return The record's sequence number, to pass to sync()
+     */
+    public long append(RecordType type, RecordWriter writer) {
+        // Per-op durability: write and force this record before anyone else can append
+        if (policy == SyncPolicy.PER_OP) {
+            synchronized (flushLock) {
+                long seq = encode(type, writer);
+                flush(seq);
+                return seq;
+            }
+        }
+        return encode(type, writer);
+    }
+
+    /**
+     * Wait until a record is durable according to the sync policy
+     *
+     * @param seq The sequence number returned by append()
+     */
+    public void sync(long seq) {
+        checkFailure();
+        if (policy == SyncPolicy.GROUP && durableSeq < seq) {
+            flush(seq);
+        }
+    }
+
+    /**
+     * Write and fsync everything appended so far
+     */
+    public void flushAll() {
+        long seq;
+        synchronized (appendLock) {
+            seq = appendedSeq;
+        }
+        flush(seq);
+    }
+
+    /**
+     * Get the journal directory
+     *
+     * @return The directory path
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the number of the active segment
+     *
+     * @return The segment number
+     */
+    public long getSegment() {
+        synchronized (appendLock) {
+            return segment;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (flushLock) {
+            if (failure == null) {
+                flushAll();
+            }
+            channel.close();
+        }
+    }
+
+    // Encode a framed record into the pending buffer and assign its sequence number
+    private long encode(RecordType type, RecordWriter writer) {
+        synchronized (appendLock) {
+            checkFailure();
+            try {
+                // Encode into the scratch buffer so the checksum can be computed
+                scratch.reset();
+                scratchOut.writeByte(type.getCode());
+                writer.write(scratchOut);
+
+                crc.reset();
+                crc.update(scratch.array(), 0, scratch.size());
+
+                DataOutputStream out = new DataOutputStream(pending);
+                out.writeInt(scratch.size());
+                out.writeInt((int) crc.getValue());
+                scratch.writeTo(pending);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to encode journal record.", e);
+            }
+            segmentRecords++;
+            return ++appendedSeq;
+        }
+    }
+
+    // Write all pending records up to at least seq and fsync them; one writer at a time.
+    // Lock order is always flushLock then appendLock
+    private void flush(long seq) {
+        synchronized (flushLock) {
+            checkFailure();
+            if (durableSeq >= seq) {
+                return;
+            }
+
+            // Swap buffers so appenders can keep going while this batch is written
+            RecordBuffer batch;
+            long batchSeq;
+            synchronized (appendLock) {
+                batch = pending;
+                pending = spare;
+                batchSeq = appendedSeq;
+            }
+
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch.array(), 0, batch.size());
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                // Part of the batch may be on disk; retrying could duplicate or reorder records
+                failure = e;
+                LOGGER.log(Level.SEVERE, "Failed to write journal; no further records will be accepted.", e);
+                throw new UncheckedIOException("Failed to write journal.", e);
+            } finally {
+                batch.reset();
+                synchronized (appendLock) {
+                    spare = batch;
+                }
+            }
+            durableSeq = batchSeq;
+        }
+    }
+
+    // Fail once a write has failed, so nothing is acknowledged on top of records that may be lost
+    private void checkFailure() {
+        IOException cause = failure;
+        if (cause != null) {
+            throw new UncheckedIOException("Journal failed earlier and accepts no more records.", cause);
+        }
+    }
+
+    // Whether any segment after the one at an index holds records
+    private boolean hasRecordsAfter(List<Long> segments, int index) throws IOException {
+        for (int i = index + 1; i < segments.size(); i++) {
+            if (Files.size(segmentFile(directory, segments.get(i))) > FILE_HEADER_SIZE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static IOException corruptSegment(long segment, long position, long size) {
+        return new IOException("Journal segment " + segment + " is corrupt at byte " + position + " of " + size
+                + "; the records after it can't be replayed.");
+    }
+
+    /**
+     * Replay the intact records of one segment
+     *
+     * @return The end position of the last intact record and the record count
+     */
+    private static long[] replaySegment(FileChannel in, RecordHandler handler) throws IOException {
+        long position = FILE_HEADER_SIZE;
+        long count = 0;
+        in.position(position);
+        DataInputStream data = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(in), BUFFER_SIZE));
+        byte[] payload = new byte[1024];
+        CRC32 check = new CRC32();
+        while (true) {
+            int length;
+            int checksum;
+            try {
+                length = data.readInt();
+                checksum = data.readInt();
+                if (length < 1 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                data.readFully(payload, 0, length);
+            } catch (EOFException e) {
+                break;
+            }
+
+            // Stop at the first record that fails its checksum
+            check.reset();
+            check.update(payload, 0, length);
+            RecordType type = RecordType.fromCode(payload[0]);
+            if ((int) check.getValue() != checksum || type == null) {
+                break;
+            }
+
+            handler.apply(type, new DataInputStream(new ByteArrayInputStream(payload, 1, length - 1)));
+            position += RECORD_HEADER_SIZE + length;
+            count++;
+        }
+        return new long[] {position, count};
+    }
+
+    // Open (or create) a segment file and position it at the end
+    private static FileChannel openSegment(Path directory, long segment) throws IOException {
+        Path file = segmentFile(directory, segment);
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < FILE_HEADER_SIZE) {
+                // New (or header-less) file, write the header
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.force(true);
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Not a bookstore journal segment: " + file);
+                }
+            }
+            channel.position(channel.size());
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("journal-%010d.log", segment));
+    }
+
+    // Segment numbers present in the directory, in ascending order
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Byte buffer that exposes its backing array
+     */
+    static final class RecordBuffer extends ByteArrayOutputStream {
+        RecordBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.bookstore.persistence;
+
+import com.bookstore.model.Author;
+import com.bookstore.model.Book;
+import com.bookstore.model.Cart;
+import com.bookstore.model.CartItem;
+import com.bookstore.model.Customer;
+import com.bookstore.model.Order;
+import com.bookstore.model.OrderItem;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compact binary encoding of the model classes
+ * Shared by the journal and snapshot files; field order is part of the
+ * on-disk format, so append new fields at the end and bump the file version
+ */
+public final class RecordCodec {
+
+    private RecordCodec() {
+    }
+
+    // Book
+
+    public static void writeBook(DataOutput out, Book book) throws IOException {
+        writeLong(out, book.getId());
+        writeString(out, book.getTitle());
+        writeLong(out, book.getAuthorId());
+        writeString(out, book.getIsbn());
+        out.writeInt(book.getPublicationYear());
+        out.writeDouble(book.getPrice());
+        out.writeInt(book.getStock());
+    }
+
+    public static Book readBook(DataInput in) throws IOException {
+        Book book = new Book();
+        book.setId(readLong(in));
+        book.setTitle(readString(in));
+        book.setAuthorId(readLong(in));
+        book.setIsbn(readString(in));
+        book.setPublicationYear(in.readInt());
+        book.setPrice(in.readDouble());
+        book.setStock(in.readInt());
+        return book;
+    }
+
+    // Author
+
+    public static void writeAuthor(DataOutput out, Author author) throws IOException {
+        writeLong(out, author.getId());
+        writeString(out, author.getName());
+        writeString(out, author.getBiography());
+    }
+
+    public static Author readAuthor(DataInput in) throws IOException {
+        return new Author(readLong(in), readString(in), readString(in));
+    }
+
+    // Customer
+
+    public static void writeCustomer(DataOutput out, Customer customer) throws IOException {
+        writeLong(out, customer.getId());
+        writeString(out, customer.getName());
+        writeString(out, customer.getEmail());
+        writeString(out, customer.getPassword());
+    }
+
+    public static Customer readCustomer(DataInput in) throws IOException {
+        return new Customer(readLong(in), readString(in), readString(in), readString(in));
+    }
+
+    // Cart
+
+    public static void writeCart(DataOutput out, Cart cart) throws IOException {
+        writeLong(out, cart.getCustomerId());
+        List<CartItem> items = cart.getItems();
+        out.writeInt(items.size());
+        for (CartItem item : items) {
+            writeLong(out, item.getBookId());
+            out.writeInt(item.getQuantity());
+        }
+    }
+
+    public static Cart readCart(DataInput in) throws IOException {
+        Cart cart = new Cart(readLong(in));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            cart.getItems().add(new CartItem(readLong(in), in.readInt()));
+        }
+        return cart;
+    }
+
+    // Order
+
+    public static void writeOrder(DataOutput out, Order order) throws IOException {
+        writeLong(out, order.getId());
+        writeLong(out, order.getCustomerId());
+        out.writeLong(order.getOrderDate() == null ? Long.MIN_VALUE : order.getOrderDate().getTime());
+        out.writeDouble(order.getTotalAmount());
+        List<OrderItem> items = order.getItems();
+        out.writeInt(items.size());
+        for (OrderItem item : items) {
+            writeLong(out, item.getBookId());
+            writeString(out, item.getBookTitle());
+            out.writeInt(item.getQuantity());
+            out.writeDouble(item.getPrice());
+        }
+    }
+
+    public static Order readOrder(DataInput in) throws IOException {
+        Order order = new Order();
+        order.setId(readLong(in));
+        order.setCustomerId(readLong(in));
+        long orderDate = in.readLong();
+        order.setOrderDate(orderDate == Long.MIN_VALUE ? null : new Date(orderDate));
+        order.setTotalAmount(in.readDouble());
+        int count = in.readInt();
+        List<OrderItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(new OrderItem(readLong(in), readString(in), in.readInt(), in.readDouble()));
+        }
+        order.setItems(items);
+        return order;
+    }
+
+    // Primitives
+
+    /**
+     * Write a nullable Long
+     */
+    public static void writeLong(DataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Read a nullable Long
+     */
+    public static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /**
+     * Write a nullable string as length-prefixed UTF-8 (no 64KB limit, unlike writeUTF)
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a nullable length-prefixed UTF-8 string
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package com.bookstore.persistence;
+
+/**
+ * Types of mutation recorded in the journal
+ * The numeric codes are written to disk and must never be reused
+ */
+public enum RecordType {
+    PUT_BOOK(1),
+    DELETE_BOOK(2),
+    PUT_AUTHOR(3),
+    DELETE_AUTHOR(4),
+    PUT_CUSTOMER(5),
+    DELETE_CUSTOMER(6),
+    PUT_CART(7),
+    CREATE_ORDER(8);
+
+    // Lookup table indexed by code
+    private static final RecordType[] BY_CODE = new RecordType[16];
+
+    static {
+        for (RecordType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    RecordType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Get the record type for an on-disk code
+     *
+     * @param code The code
+     * @return The record type, or null if unknown
+     */
+    public static RecordType fromCode(byte code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,398 @@
+package com.bookstore.persistence;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the DataService state
+ *
+ * A snapshot covers every journal segment up to and including the one named
+ * in its header, so startup loads the latest snapshot and replays only the
+ * later segments. Records are grouped into independent chunks of a few MB,
+ * each with its own CRC, listed in a table at the end of the file:
+ *
+ *   [magic][version][journal segment][counter count][counters...]
+ *   [chunk]...[chunk]
+ *   [chunk count]([section][offset][length][record count][crc])...
+ *   [table offset][magic]
+ *
+ * The loader memory-maps each chunk and decodes chunks in parallel.
+ */
+public final class Snapshot {
+
+    /**
+     * Kinds of records stored in a snapshot
+     * The numeric codes are written to disk and must never be reused
+     */
+    public enum Section {
+        AUTHORS(1),
+        BOOKS(2),
+        CUSTOMERS(3),
+        CARTS(4),
+        ORDERS(5);
+
+        private final byte code;
+
+        Section(int code) {
+            this.code = (byte) code;
+        }
+
+        static Section fromCode(byte code) throws IOException {
+            for (Section section : values()) {
+                if (section.code == code) {
+                    return section;
+                }
+            }
+            throw new IOException("Unknown snapshot section " + code);
+        }
+    }
+
+    /**
+     * Encodes one record of a section
+     *
+     * @param <T> The record type
+     */
+    @FunctionalInterface
+    public interface Encoder<T> {
+        void write(DataOutput out, T value) throws IOException;
+    }
+
+    /**
+     * Receives decoded records; called concurrently from several threads
+     */
+    @FunctionalInterface
+    public interface RecordSink {
+        void accept(Section section, DataInput in) throws IOException;
+    }
+
+    private static final int MAGIC = 0x4253534e; // "BSSN"
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = 12;
+
+    // Chunks are closed once they reach this size
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+    private Snapshot() {
+    }
+
+    /**
+     * Start writing a snapshot
+     *
+     * @param directory The data directory
+     * @param journalSegment The last journal segment the snapshot covers
+     * @param counters The ID counters to restore
+     * @return The snapshot writer
+     * @throws IOException if the file can't be created
+     */
+    public static Writer create(Path directory, long journalSegment, long[] counters) throws IOException {
+        return new Writer(directory, journalSegment, counters);
+    }
+
+    /**
+     * Find the latest complete snapshot in a directory
+     *
+     * @param directory The data directory
+     * @return The snapshot file, or null if there is none
+     * @throws IOException if the directory can't be listed
+     */
+    public static Path latest(Path directory) throws IOException {
+        Path latest = null;
+        long latestSegment = -1;
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.snap")) {
+            for (Path file : files) {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) > latestSegment) {
+                    latestSegment = Long.parseLong(matcher.group(1));
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Delete every snapshot older than the given one
+     *
+     * @param directory The data directory
+     * @param journalSegment The journal segment covered by the snapshot to keep
+     * @throws IOException if a file can't be deleted
+     */
+    public static void deleteOlderThan(Path directory, long journalSegment) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.snap")) {
+            for (Path file : files) {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < journalSegment) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a snapshot, decoding its chunks in parallel from memory-mapped regions
+     *
+     * @param file The snapshot file
+     * @param sink Receives every record; must be thread-safe
+     * @return The snapshot header
+     * @throws IOException if the file is malformed or a chunk fails its checksum
+     */
+    public static Header load(Path file, RecordSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            // Footer points at the chunk table
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+            readFully(channel, footer, size - FOOTER_SIZE);
+            long tableOffset = footer.getLong();
+            if (footer.getInt() != MAGIC || tableOffset < 0 || tableOffset > size - FOOTER_SIZE) {
+                throw new IOException("Not a complete bookstore snapshot: " + file);
+            }
+
+            // Header
+            MappedByteBuffer headerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 4096));
+            if (headerBuffer.getInt() != MAGIC || headerBuffer.getInt() != VERSION) {
+                throw new IOException("Unsupported snapshot format: " + file);
+            }
+            long journalSegment = headerBuffer.getLong();
+            long[] counters = new long[headerBuffer.getInt()];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = headerBuffer.getLong();
+            }
+
+            // Chunk table
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, size - FOOTER_SIZE - tableOffset);
+            int chunkCount = table.getInt();
+            List<Chunk> chunks = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                chunks.add(new Chunk(Section.fromCode(table.get()), table.getLong(), table.getInt(),
+                        table.getInt(), table.getInt()));
+            }
+
+            // Decode chunks in parallel; each maps only its own region
+            try {
+                chunks.parallelStream().forEach(chunk -> {
+                    try {
+                        loadChunk(channel, chunk, sink);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw new IOException("Failed to load snapshot " + file, e.getCause());
+            }
+            return new Header(journalSegment, counters);
+        }
+    }
+
+    private static void loadChunk(FileChannel channel, Chunk chunk, RecordSink sink) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.offset, chunk.length);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != chunk.crc) {
+            throw new IOException("Snapshot chunk at offset " + chunk.offset + " failed its checksum.");
+        }
+        ByteBufferDataInput in = new ByteBufferDataInput(buffer);
+        for (int i = 0; i < chunk.count; i++) {
+            sink.accept(chunk.section, in);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot.");
+            }
+        }
+        buffer.flip();
+    }
+
+    // Fsync a directory so renames and deletions in it are durable; Windows can't open directories
+    // and doesn't need it
+    private static void syncDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name", "").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Snapshot metadata
+     */
+    public static final class Header {
+        private final long journalSegment;
+        private final long[] counters;
+
+        Header(long journalSegment, long[] counters) {
+            this.journalSegment = journalSegment;
+            this.counters = counters;
+        }
+
+        public long getJournalSegment() {
+            return journalSegment;
+        }
+
+        public long[] getCounters() {
+            return counters.clone();
+        }
+    }
+
+    // Location of one chunk in the file
+    private static final class Chunk {
+        final Section section;
+        final long offset;
+        final int length;
+        final int count;
+        final int crc;
+
+        Chunk(Section section, long offset, int length, int count, int crc) {
+            this.section = section;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.crc = crc;
+        }
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and publishes it atomically on commit
+     */
+    public static final class Writer implements Closeable {
+        private final Path directory;
+        private final long journalSegment;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final List<Chunk> chunks = new ArrayList<>();
+
+        private final Journal.RecordBuffer chunk = new Journal.RecordBuffer(CHUNK_SIZE + 64 * 1024);
+        private final DataOutputStream chunkOut = new DataOutputStream(chunk);
+        private long position;
+        private boolean committed;
+
+        private Writer(Path directory, long journalSegment, long[] counters) throws IOException {
+            this.directory = directory;
+            this.journalSegment = journalSegment;
+            Files.createDirectories(directory);
+            this.temporary = directory.resolve(fileName(journalSegment) + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+            // Header
+            chunkOut.writeInt(MAGIC);
+            chunkOut.writeInt(VERSION);
+            chunkOut.writeLong(journalSegment);
+            chunkOut.writeInt(counters.length);
+            for (long counter : counters) {
+                chunkOut.writeLong(counter);
+            }
+            writeBuffer();
+        }
+
+        /**
+         * Write every record of a section
+         *
+         * @param section The section
+         * @param values The records
+         * @param encoder Encodes one record
+         * @param <T> The record type
+         * @throws IOException if writing fails
+         */
+        public <T> void writeSection(Section section, Iterable<T> values, Encoder<T> encoder) throws IOException {
+            int count = 0;
+            for (T value : values) {
+                encoder.write(chunkOut, value);
+                count++;
+                if (chunk.size() >= CHUNK_SIZE) {
+                    closeChunk(section, count);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                closeChunk(section, count);
+            }
+        }
+
+        /**
+         * Write the chunk table, fsync and atomically publish the snapshot
+         * The directory is fsynced too, so once this returns the snapshot
+         * survives a crash
+         *
+         * @return The published snapshot file
+         * @throws IOException if writing fails
+         */
+        public Path commit() throws IOException {
+            long tableOffset = position;
+            chunkOut.writeInt(chunks.size());
+            for (Chunk written : chunks) {
+                chunkOut.writeByte(written.section.code);
+                chunkOut.writeLong(written.offset);
+                chunkOut.writeInt(written.length);
+                chunkOut.writeInt(written.count);
+                chunkOut.writeInt(written.crc);
+            }
+            chunkOut.writeLong(tableOffset);
+            chunkOut.writeInt(MAGIC);
+            writeBuffer();
+            channel.force(true);
+            channel.close();
+
+            Path target = directory.resolve(fileName(journalSegment));
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+
+            // Make the rename durable before the caller deletes the journal segments it covers
+            syncDirectory(directory);
+            return target;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void closeChunk(Section section, int count) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(chunk.array(), 0, chunk.size());
+            chunks.add(new Chunk(section, position, chunk.size(), count, (int) crc.getValue()));
+            writeBuffer();
+        }
+
+        private void writeBuffer() throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(chunk.array(), 0, chunk.size());
+            while (bytes.hasRemaining()) {
+                position += channel.write(bytes);
+            }
+            chunk.reset();
+        }
+
+        private static String fileName(long journalSegment) {
+            return String.format("snapshot-%010d.snap", journalSegment);
+        }
+    }
+}
@@ -4,13 +4,17 @@
  */
 package com.bookstore.resources;
 
+import com.bookstore.json.ModelCborProvider;
+import com.bookstore.json.ModelJson;
 import com.bookstore.model.Author;
 import com.bookstore.model.Book;
 import com.bookstore.service.DataService;
 
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.List;
 
@@ -19,8 +23,8 @@ import java.util.List;
  * Exposes RESTful endpoints for CRUD operations on authors
  */
 @Path("/authors")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
 public class AuthorResource {
     // Data service instance
     private final DataService dataService = DataService.getInstance();
@@ -39,26 +43,38 @@ public class AuthorResource {
     
     /**
      * Get all authors
+     * The encoded listing is cached until an author changes. The response is tagged
+     * with the listing's version; a matching If-None-Match gets 304 without the
+     * listing being copied
      * 
-     * @return Response with the list of all authors
+     * @param request The request, for its preconditions
+     * @return Response with the list of all authors, or status 304 (Not Modified)
      */
     @GET
-    public Response getAllAuthors() {
-        List<Author> authors = dataService.getAllAuthors();
-        return Response.ok(authors).build();
+    public Response getAllAuthors(@Context Request request) {
+        long version = dataService.getAuthorsVersion();
+        return CachedResponses.get(request, "authors", version, (json, responseHeaders) -> {
+            json.beginArray();
+            for (Author author : dataService.getAllAuthors()) {
+                ModelJson.write(json, author);
+            }
+            json.endArray();
+        });
     }
     
     /**
      * Get an author by ID
+     * The response is tagged with the author's version; a matching If-None-Match gets 304
      * 
      * @param id The author ID
-     * @return Response with the author
+     * @param request The request, for its preconditions
+     * @return Response with the author, or status 304 (Not Modified)
      */
     @GET
     @Path("/{id}")
-    public Response getAuthorById(@PathParam("id") Long id) {
+    public Response getAuthorById(@PathParam("id") Long id, @Context Request request) {
         Author author = dataService.getAuthorById(id);
-        return Response.ok(author).build();
+        return EntityTags.conditionalGet(request, author.version(), () -> author);
     }
     
     /**
@@ -90,14 +106,19 @@ public class AuthorResource {
     
     /**
      * Get all books by an author
+     * The encoded list is cached until one of the author's books or its stock changes;
+     * stock changes to other books leave it alone
      * 
      * @param id The author ID
-     * @return Response with the list of books by the author
+     * @param request The request, for its preconditions
+     * @return Response with the list of books by the author, or status 304 (Not Modified)
      */
     @GET
     @Path("/{id}/books")
-    public Response getBooksByAuthor(@PathParam("id") Long id) {
+    public Response getBooksByAuthor(@PathParam("id") Long id, @Context Request request) {
+        long listVersion = dataService.getAuthorBooksVersion(id);
         List<Book> books = dataService.getBooksByAuthor(id);
-        return Response.ok(books).build();
+        return CachedResponses.get(request, "authors/" + id + "/books", BookResource.versionOf(listVersion, books),
+                (json, responseHeaders) -> BookResource.writeBooks(json, books));
     }
 }
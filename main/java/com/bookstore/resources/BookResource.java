@@ -3,8 +3,18 @@
  * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
  */
 package com.bookstore.resources;
+import com.bookstore.exception.ExceptionMapper;
+import com.bookstore.exception.InvalidInputException;
+import com.bookstore.json.Encoding;
+import com.bookstore.json.JsonReader;
+import com.bookstore.json.JsonWriter;
+import com.bookstore.json.ModelCborProvider;
+import com.bookstore.json.ModelJson;
 import com.bookstore.model.Book;
+import com.bookstore.model.ErrorResponse;
+import com.bookstore.service.BookQuery;
 import com.bookstore.service.DataService;
+import com.bookstore.service.ServiceExecutor;
 
 
 import javax.ws.rs.Path;
@@ -13,20 +23,63 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Resource class for handling book-related operations
  * Exposes RESTful endpoints for CRUD operations on books
  */
 @Path("/books")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
 public class BookResource {
+    // Largest page a client may request
+    private static final int MAX_PAGE_SIZE = 1000;
+    
+    // Page size used when paginating without an explicit limit
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    
+    // Largest and default number of search results
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int DEFAULT_SEARCH_RESULTS = 20;
+    
+    // Header carrying the cursor for the next page
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
+    // Newline-delimited JSON, one value per line
+    private static final String NDJSON = "application/x-ndjson";
+    
+    // Lines parsed, validated and applied together by a bulk import
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    
+    // Maps rejected import lines to the same status and error as a single request
+    private static final ExceptionMapper EXCEPTION_MAPPER = new ExceptionMapper();
+    
     // Data service instance
     private final DataService dataService = DataService.getInstance();
     
@@ -34,36 +87,328 @@ public class BookResource {
      * Create a new book
      * 
      * @param book The book to create
-     * @return Response with the created book and status 201 (Created)
+     * @return Stage completed with the created book and status 201 (Created)
+     */
+    @POST
+    public CompletionStage<Response> createBook(Book book) {
+        return ServiceExecutor.supplyUpdate(() -> {
+            Book createdBook = dataService.createBook(book);
+            return Response.status(Response.Status.CREATED).entity(createdBook).build();
+        });
+    }
+    
+    /**
+     * Import books from a newline-delimited JSON body, one book per line
+     * The body is read and applied in batches while the report is written, so
+     * memory use doesn't depend on the size of the upload. The report has one
+     * JSON line per non-blank input line, with the created book's ID or the error
+     * 
+     * @param body The request body
+     * @return Response streaming the per-line report
      */
     @POST
-    public Response createBook(Book book) {
-        Book createdBook = dataService.createBook(book);
-        return Response.status(Response.Status.CREATED).entity(createdBook).build();
+    @Path("/bulk")
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    public Response importBooks(InputStream body) {
+        StreamingOutput report = output -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>(IMPORT_BATCH_SIZE);
+            long firstLine = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == IMPORT_BATCH_SIZE) {
+                    importBatch(lines, firstLine, writer);
+                    firstLine += lines.size();
+                    lines.clear();
+                }
+            }
+            importBatch(lines, firstLine, writer);
+            writer.flush();
+        };
+        return Response.ok(report).build();
+    }
+    
+    /**
+     * Parse, create and report one batch of import lines
+     * 
+     * @param lines The raw lines
+     * @param firstLine The line number of the first line
+     * @param writer Receives the report lines
+     * @throws IOException if writing the report fails
+     */
+    private void importBatch(List<String> lines, long firstLine, Writer writer) throws IOException {
+        // Parse lines in parallel; blank lines are skipped
+        Book[] parsed = new Book[lines.size()];
+        RuntimeException[] failures = new RuntimeException[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> {
+            String line = lines.get(i);
+            if (line.trim().isEmpty()) {
+                return;
+            }
+            try {
+                JsonReader json = new JsonReader(new StringReader(line));
+                parsed[i] = ModelJson.readBook(json);
+                
+                // Reject anything after the object
+                json.peek();
+            } catch (IOException e) {
+                parsed[i] = null;
+                failures[i] = new InvalidInputException("Malformed book JSON: " + e.getMessage());
+            }
+        });
+        
+        // Create the parsed books as one batch
+        List<Book> batch = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < parsed.length; i++) {
+            if (parsed[i] != null) {
+                batch.add(parsed[i]);
+                positions.add(i);
+            }
+        }
+        List<RuntimeException> results = dataService.createBooks(batch);
+        for (int i = 0; i < results.size(); i++) {
+            failures[positions.get(i)] = results.get(i);
+        }
+        
+        // Write one report line per input line
+        JsonWriter json = new JsonWriter(writer);
+        for (int i = 0; i < lines.size(); i++) {
+            if (parsed[i] == null && failures[i] == null) {
+                continue;
+            }
+            json.beginObject();
+            json.name("line").value(firstLine + i);
+            if (failures[i] == null) {
+                json.name("status").value(Response.Status.CREATED.getStatusCode());
+                json.name("id").value(parsed[i].getId());
+            } else {
+                Response error = EXCEPTION_MAPPER.toResponse(failures[i]);
+                ErrorResponse errorResponse = (ErrorResponse) error.getEntity();
+                json.name("status").value(error.getStatus());
+                json.name("error").value(errorResponse.getError());
+                json.name("message").value(errorResponse.getMessage());
+            }
+            json.endObject();
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+    
+    /**
+     * Get all books, optionally filtered, sorted and one page at a time
+     * Pages are keyed on book ID: pass the last ID of the previous page as "after".
+     * Price and year ranges are inclusive; without a sort, filtered results are
+     * ordered by the filtered field. When "stream" is set the JSON array is
+     * written incrementally instead of being built in memory first; otherwise
+     * the encoded response is cached: a full listing until any book or its
+     * stock changes, a page until the book list or the stock of its books does
+     * 
+     * @param after Only books after the book with this ID are returned
+     * @param limit The maximum number of books to return
+     * @param stream Whether to stream the response
+     * @param minPrice The minimum price
+     * @param maxPrice The maximum price
+     * @param yearFrom The earliest publication year
+     * @param yearTo The latest publication year
+     * @param sort The ordering: price, year or title
+     * @param request The request, for its preconditions
+     * @return Stage completed with the list of books, or status 304 (Not Modified)
+     */
+    @GET
+    public CompletionStage<Response> getAllBooks(
+            @QueryParam("after") Long after,
+            @QueryParam("limit") Integer limit,
+            @QueryParam("stream") boolean stream,
+            @QueryParam("minPrice") Double minPrice,
+            @QueryParam("maxPrice") Double maxPrice,
+            @QueryParam("yearFrom") Integer yearFrom,
+            @QueryParam("yearTo") Integer yearTo,
+            @QueryParam("sort") String sort,
+            @Context Request request) {
+        // Validate limit
+        if (limit != null && (limit <= 0 || limit > MAX_PAGE_SIZE)) {
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        
+        BookQuery query = new BookQuery();
+        query.setAfterId(after);
+        query.setMinPrice(minPrice);
+        query.setMaxPrice(maxPrice);
+        query.setYearFrom(yearFrom);
+        query.setYearTo(yearTo);
+        query.setSort(parseSort(sort));
+        
+        return ServiceExecutor.supply(() -> {
+            // Stream straight from the ordered store or index without copying
+            if (stream) {
+                Encoding encoding = EntityTags.select(request);
+                return Response.ok(streamBooks(dataService.findBooks(query),
+                        limit == null ? Integer.MAX_VALUE : limit, encoding), encoding.getMediaType()).build();
+            }
+            
+            // Serve the encoded listing from the cache; the version is read before the books
+            String key = "books?after=" + after + "&limit=" + limit + "&minPrice=" + minPrice + "&maxPrice=" + maxPrice
+                    + "&yearFrom=" + yearFrom + "&yearTo=" + yearTo + "&sort=" + query.getSort();
+            
+            // Unpaginated listing; it shows every book's stock, so it follows every stock change
+            if (after == null && limit == null) {
+                long version = dataService.getBooksVersion();
+                return CachedResponses.get(request, key, version, (json, responseHeaders) -> {
+                    List<Book> books = query.isFilteredOrSorted()
+                            ? dataService.findBooks(query).collect(Collectors.toList())
+                            : dataService.getAllBooks();
+                    writeBooks(json, books);
+                });
+            }
+            
+            // Keyset pagination; a page is only rebuilt when the book list or the stock of its own books changes
+            long listVersion = dataService.getBookListVersion();
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+            List<Book> books = query.isFilteredOrSorted()
+                    ? dataService.findBooks(query).limit(pageSize).collect(Collectors.toList())
+                    : dataService.getBooksPage(after, pageSize);
+            return CachedResponses.get(request, key, versionOf(listVersion, books), (json, responseHeaders) -> {
+                writeBooks(json, books);
+                if (books.size() == pageSize) {
+                    responseHeaders.put(NEXT_CURSOR_HEADER, books.get(books.size() - 1).getId());
+                }
+            });
+        });
+    }
+    
+    /**
+     * Get the version of a list of books
+     * 
+     * @param listVersion The version of the list itself, read before the books
+     * @param books The books
+     * @return The newest of the list version and the books' versions
+     */
+    static long versionOf(long listVersion, List<Book> books) {
+        long version = listVersion;
+        for (Book book : books) {
+            version = Math.max(version, book.version());
+        }
+        return version;
     }
     
     /**
-     * Get all books
+     * Write a list of books as a JSON array
      * 
-     * @return Response with the list of all books
+     * @param json The JSON writer
+     * @param books The books
+     * @throws IOException if writing fails
+     */
+    static void writeBooks(JsonWriter json, List<Book> books) throws IOException {
+        json.beginArray();
+        for (Book book : books) {
+            ModelJson.write(json, book);
+        }
+        json.endArray();
+    }
+    
+    /**
+     * Parse the sort parameter
+     * 
+     * @param sort The parameter value, or null
+     * @return The ordering, or null if none was requested
+     * @throws InvalidInputException if the value isn't a supported ordering
+     */
+    private static BookQuery.Sort parseSort(String sort) {
+        if (sort == null || sort.isEmpty()) {
+            return null;
+        }
+        try {
+            return BookQuery.Sort.valueOf(sort.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputException("Sort must be one of price, year or title.");
+        }
+    }
+    
+    /**
+     * Build a streaming array of books
+     * 
+     * @param books The books, in response order
+     * @param limit The maximum number of books to write
+     * @param encoding The encoding of the array
+     * @return Streaming output writing the array
+     */
+    private StreamingOutput streamBooks(Stream<Book> books, int limit, Encoding encoding) {
+        return output -> {
+            try (JsonWriter json = encoding.writer(output)) {
+                json.beginArray();
+                Iterator<Book> iterator = books.limit(limit).iterator();
+                while (iterator.hasNext()) {
+                    ModelJson.write(json, iterator.next());
+                }
+                json.endArray();
+            }
+        };
+    }
+    
+    /**
+     * Search books by title and author name or biography, most relevant first
+     * 
+     * @param query The search text
+     * @param limit The maximum number of books to return
+     * @param request The request, for the negotiated encoding
+     * @return Stage completed with the ranked list of books
      */
     @GET
-    public Response getAllBooks() {
-        List<Book> books = dataService.getAllBooks();
-        return Response.ok(books).build();
+    @Path("/search")
+    public CompletionStage<Response> searchBooks(
+            @QueryParam("q") String query,
+            @QueryParam("limit") Integer limit,
+            @Context Request request) {
+        // Validate limit
+        if (limit != null && (limit <= 0 || limit > MAX_SEARCH_RESULTS)) {
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_SEARCH_RESULTS + ".");
+        }
+        
+        return ServiceExecutor.supply(() -> {
+            List<Book> books = dataService.searchBooks(query, limit == null ? DEFAULT_SEARCH_RESULTS : limit);
+            
+            // The element type goes with the list, since the method's own return type doesn't name it
+            return Response.ok(new GenericEntity<List<Book>>(books) { }, EntityTags.select(request).getMediaType())
+                    .build();
+        });
     }
     
     /**
      * Get a book by ID
+     * The response is tagged with the book's version; a matching If-None-Match gets 304
      * 
      * @param id The book ID
-     * @return Response with the book
+     * @param request The request, for its preconditions
+     * @return Stage completed with the book, or status 304 (Not Modified)
      */
     @GET
     @Path("/{id}")
-    public Response getBookById(@PathParam("id") Long id) {
-        Book book = dataService.getBookById(id);
-        return Response.ok(book).build();
+    public CompletionStage<Response> getBookById(@PathParam("id") Long id, @Context Request request) {
+        return ServiceExecutor.supply(() -> {
+            Book book = dataService.getBookById(id);
+            return EntityTags.conditionalGet(request, book.version(), () -> book);
+        });
+    }
+    
+    /**
+     * Get a book by ISBN
+     * The response is tagged with the book's version; a matching If-None-Match gets 304
+     * 
+     * @param isbn The ISBN-10 or ISBN-13, with or without hyphens
+     * @param request The request, for its preconditions
+     * @return Stage completed with the book, or status 304 (Not Modified)
+     */
+    @GET
+    @Path("/isbn/{isbn}")
+    public CompletionStage<Response> getBookByIsbn(@PathParam("isbn") String isbn, @Context Request request) {
+        return ServiceExecutor.supply(() -> {
+            Book book = dataService.getBookByIsbn(isbn);
+            return EntityTags.conditionalGet(request, book.version(), () -> book);
+        });
     }
     
     /**
@@ -71,26 +416,30 @@ public class BookResource {
      * 
      * @param id The book ID
      * @param book The updated book data
-     * @return Response with the updated book
+     * @return Stage completed with the updated book
      */
     @PUT
     @Path("/{id}")
-    public Response updateBook(@PathParam("id") Long id, Book book) {
-        Book updatedBook = dataService.updateBook(id, book);
-        return Response.ok(updatedBook).build();
+    public CompletionStage<Response> updateBook(@PathParam("id") Long id, Book book) {
+        return ServiceExecutor.supplyUpdate(() -> {
+            Book updatedBook = dataService.updateBook(id, book);
+            return Response.ok(updatedBook).build();
+        });
     }
     
     /**
      * Delete a book
      * 
      * @param id The book ID
-     * @return Response with status 204 (No Content)
+     * @return Stage completed with status 204 (No Content)
      */
     @DELETE
     @Path("/{id}")
-    public Response deleteBook(@PathParam("id") Long id) {
-        dataService.deleteBook(id);
-        return Response.noContent().build();
+    public CompletionStage<Response> deleteBook(@PathParam("id") Long id) {
+        return ServiceExecutor.supplyUpdate(() -> {
+            dataService.deleteBook(id);
+            return Response.noContent().build();
+        });
     }
     
 }
@@ -0,0 +1,61 @@
+package com.bookstore.resources;
+
+import com.bookstore.cache.ResponseCache;
+import com.bookstore.compression.Compression;
+import com.bookstore.config.Settings;
+import com.bookstore.json.Encoding;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+/**
+ * Serves hot collection endpoints from pre-encoded JSON or CBOR bytes
+ * Bodies are cached per endpoint and parameters against the version of the
+ * listing they were built from, so a hit skips entity serialization and a
+ * DataService mutation invalidates exactly the listings it touched. Large
+ * bodies are also kept gzipped, and the compression interceptor sends that
+ * copy to clients accepting gzip. Responses are tagged with the listing
+ * version, and a matching If-None-Match gets 304
+ *
+ * Configured by bookstore.cache.maxBytes (default 16 MiB, 0 disables
+ * caching) and bookstore.cache.gzip (default true)
+ */
+final class CachedResponses {
+    private static final String MAX_BYTES_SETTING = "bookstore.cache.maxBytes";
+    private static final String GZIP_SETTING = "bookstore.cache.gzip";
+
+    // Shared by every resource instance; bodies too small to be compressed aren't gzipped
+    private static final ResponseCache CACHE = new ResponseCache(
+            Settings.getLong(MAX_BYTES_SETTING, 16L * 1024 * 1024),
+            Compression.isEnabled() && Settings.getBoolean(GZIP_SETTING, true) ? Compression.getMinBytes() : -1);
+
+    private CachedResponses() {
+    }
+
+    /**
+     * Answer a GET from the cache, building the body on a miss
+     * The version must be read before anything the body is built from
+     *
+     * @param request The request, for its preconditions
+     * @param key The endpoint and its parameters
+     * @param version The current version of the listing
+     * @param body Writes the body on a miss
+     * @return Response with the cache entry, or status 304 (Not Modified)
+     */
+    static Response get(Request request, String key, long version, ResponseCache.Body body) {
+        Encoding encoding = EntityTags.select(request);
+        EntityTag tag = EntityTags.of(version, encoding);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+
+        // Tag with the entry's own version, which may be newer than the one read
+        ResponseCache.Entry entry = CACHE.get(key, encoding, version, body);
+        Response.ResponseBuilder response = Response.ok(entry, encoding.getMediaType())
+                .tag(EntityTags.of(entry.getVersion(), encoding));
+        entry.getHeaders().forEach(response::header);
+        return response.build();
+    }
+}
@@ -4,36 +4,45 @@
  */
 package com.bookstore.resources;
 
+import com.bookstore.json.ModelCborProvider;
 import com.bookstore.model.Cart;
 import com.bookstore.model.CartItem;
 import com.bookstore.service.DataService;
+import com.bookstore.service.ServiceExecutor;
 
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Resource class for handling cart-related operations
  * Exposes RESTful endpoints for managing a customer's shopping cart
  */
 @Path("/customers/{customerId}/cart")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
 public class CartResource {
     // Data service instance
     private final DataService dataService = DataService.getInstance();
     
     /**
      * Get a customer's cart
+     * The response is tagged with the cart's version; a matching If-None-Match gets 304
      * 
      * @param customerId The customer ID
-     * @return Response with the customer's cart
+     * @param request The request, for its preconditions
+     * @return Stage completed with the customer's cart, or status 304 (Not Modified)
      */
     @GET
-    public Response getCart(@PathParam("customerId") Long customerId) {
-        Cart cart = dataService.getCart(customerId);
-        return Response.ok(cart).build();
+    public CompletionStage<Response> getCart(@PathParam("customerId") Long customerId, @Context Request request) {
+        return ServiceExecutor.supply(() -> {
+            Cart cart = dataService.getCart(customerId);
+            return EntityTags.conditionalGet(request, cart.version(), () -> cart);
+        });
     }
     
     /**
@@ -41,13 +50,15 @@ public class CartResource {
      * 
      * @param customerId The customer ID
      * @param cartItem The item to add
-     * @return Response with the updated cart
+     * @return Stage completed with the updated cart
      */
     @POST
     @Path("/items")
-    public Response addCartItem(@PathParam("customerId") Long customerId, CartItem cartItem) {
-        Cart updatedCart = dataService.addCartItem(customerId, cartItem);
-        return Response.ok(updatedCart).build();
+    public CompletionStage<Response> addCartItem(@PathParam("customerId") Long customerId, CartItem cartItem) {
+        return ServiceExecutor.supplyUpdate(() -> {
+            Cart updatedCart = dataService.addCartItem(customerId, cartItem);
+            return Response.ok(updatedCart).build();
+        });
     }
     
     /**
@@ -56,17 +67,19 @@ public class CartResource {
      * @param customerId The customer ID
      * @param bookId The book ID
      * @param cartItem The item with updated quantity
-     * @return Response with the updated cart
+     * @return Stage completed with the updated cart
      */
     @PUT
     @Path("/items/{bookId}")
-    public Response updateCartItem(
+    public CompletionStage<Response> updateCartItem(
             @PathParam("customerId") Long customerId,
             @PathParam("bookId") Long bookId,
             CartItem cartItem) {
-        // Use the quantity from the cart item
-        Cart updatedCart = dataService.updateCartItem(customerId, bookId, cartItem.getQuantity());
-        return Response.ok(updatedCart).build();
+        return ServiceExecutor.supplyUpdate(() -> {
+            // Use the quantity from the cart item
+            Cart updatedCart = dataService.updateCartItem(customerId, bookId, cartItem.getQuantity());
+            return Response.ok(updatedCart).build();
+        });
     }
     
     /**
@@ -74,14 +87,16 @@ public class CartResource {
      * 
      * @param customerId The customer ID
      * @param bookId The book ID
-     * @return Response with the updated cart
+     * @return Stage completed with the updated cart
      */
     @DELETE
     @Path("/items/{bookId}")
-    public Response removeCartItem(
+    public CompletionStage<Response> removeCartItem(
             @PathParam("customerId") Long customerId,
             @PathParam("bookId") Long bookId) {
-        Cart updatedCart = dataService.removeCartItem(customerId, bookId);
-        return Response.ok(updatedCart).build();
+        return ServiceExecutor.supplyUpdate(() -> {
+            Cart updatedCart = dataService.removeCartItem(customerId, bookId);
+            return Response.ok(updatedCart).build();
+        });
     }
 }
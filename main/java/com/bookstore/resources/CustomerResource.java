@@ -4,11 +4,13 @@
  */
 package com.bookstore.resources;
 
+import com.bookstore.json.ModelCborProvider;
 import com.bookstore.model.Customer;
 import com.bookstore.service.DataService;
 
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.List;
@@ -18,8 +20,8 @@ import java.util.List;
  * Exposes RESTful endpoints for CRUD operations on customers
  */
 @Path("/customers")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
 public class CustomerResource {
     // Data service instance
     private final DataService dataService = DataService.getInstance();
@@ -37,14 +39,19 @@ public class CustomerResource {
     }
     
     /**
-     * Get all customers
+     * Get all customers, or look up a single customer by email
      * 
-     * @return Response with the list of all customers
+     * @param email Optional email address to look up
+     * @return Response with the list of all customers, or the matching customer
      */
     @GET
-    public Response getAllCustomers() {
+    public Response getAllCustomers(@QueryParam("email") String email) {
+        if (email != null) {
+            Customer customer = dataService.getCustomerByEmail(email);
+            return Response.ok(customer).build();
+        }
         List<Customer> customers = dataService.getAllCustomers();
-        return Response.ok(customers).build();
+        return Response.ok(new GenericEntity<List<Customer>>(customers) { }).build();
     }
     
     /**
@@ -0,0 +1,75 @@
+package com.bookstore.resources;
+
+import com.bookstore.json.Encoding;
+import com.bookstore.json.ModelCborProvider;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Strong entity tags built from entity versions, and conditional GET handling
+ * Versions restart with the process, so each tag also carries the process
+ * start time; a tag from before a restart never matches afterwards. Entities
+ * are served as JSON or CBOR, chosen from Accept, and the CBOR representation
+ * gets its own tags
+ */
+final class EntityTags {
+    // Distinguishes tags issued by this process from those of earlier runs
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    // The representations of an entity, JSON preferred
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE, ModelCborProvider.APPLICATION_CBOR_TYPE).build();
+
+    private EntityTags() {
+    }
+
+    /**
+     * Pick the encoding of the response from the request's Accept header
+     *
+     * @param request The request
+     * @return The encoding; JSON unless the client prefers CBOR
+     */
+    static Encoding select(Request request) {
+        Variant variant = request.selectVariant(VARIANTS);
+        return variant == null ? Encoding.JSON : Encoding.of(variant.getMediaType());
+    }
+
+    /**
+     * Build the strong entity tag for a version
+     *
+     * @param version The entity or listing version
+     * @param encoding The encoding of the representation
+     * @return The entity tag
+     */
+    static EntityTag of(long version, Encoding encoding) {
+        String tag = EPOCH + "-" + Long.toString(version, 36);
+        return new EntityTag(encoding == Encoding.JSON ? tag : tag + "-cbor");
+    }
+
+    /**
+     * Answer a GET with the entity, or with 304 (Not Modified) if the client's
+     * If-None-Match already names this version
+     * The version must be read before the entity: the entity is then at least as
+     * new as the tag, and any later change moves the version on
+     *
+     * @param request The request, for its preconditions
+     * @param version The entity version
+     * @param entity Supplies the entity; not called when the answer is 304
+     * @return Response with the entity and its tag, or 304
+     */
+    static Response conditionalGet(Request request, long version, Supplier<?> entity) {
+        Encoding encoding = select(request);
+        EntityTag tag = of(version, encoding);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+        return Response.ok(entity.get(), encoding.getMediaType()).tag(tag).build();
+    }
+}
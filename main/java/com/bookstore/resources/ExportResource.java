@@ -0,0 +1,219 @@
+package com.bookstore.resources;
+
+import com.bookstore.compression.CompressedOutputStream;
+import com.bookstore.compression.Compression;
+import com.bookstore.csv.CsvWriter;
+import com.bookstore.exception.InvalidInputException;
+import com.bookstore.json.JsonWriter;
+import com.bookstore.json.ModelJson;
+import com.bookstore.model.Book;
+import com.bookstore.model.Order;
+import com.bookstore.model.OrderItem;
+import com.bookstore.service.DataService;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Resource class for bulk data export
+ * Rows are streamed straight from the DataService structures as NDJSON
+ * (one JSON object per line) or CSV, optionally gzip-compressed, without
+ * building the result in memory or holding any lock while rows are written
+ */
+@Path("/export")
+public class ExportResource {
+    // Export media types
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    // Data service instance
+    private final DataService dataService = DataService.getInstance();
+
+    /**
+     * Export every book
+     *
+     * @param format The output format: ndjson (default) or csv
+     * @param gzip Whether to gzip-compress the output
+     * @return Response streaming the books
+     */
+    @GET
+    @Path("/books")
+    @Produces({NDJSON, CSV})
+    public Response exportBooks(@QueryParam("format") String format, @QueryParam("gzip") boolean gzip) {
+        boolean csv = parseFormat(format);
+        Stream<Book> books = dataService.exportBooks();
+        return export(csv, gzip, "books", writer -> {
+            Iterator<Book> iterator = books.iterator();
+            if (csv) {
+                CsvWriter rows = new CsvWriter(writer);
+                rows.row("id", "title", "authorId", "isbn", "publicationYear", "price", "stock");
+                while (iterator.hasNext()) {
+                    Book book = iterator.next();
+                    rows.field(book.getId()).field(book.getTitle()).field(book.getAuthorId())
+                            .field(book.getIsbn()).field(book.getPublicationYear()).field(book.getPrice())
+                            .field(book.getStock()).endRow();
+                }
+            } else {
+                JsonWriter json = new JsonWriter(writer);
+                while (iterator.hasNext()) {
+                    ModelJson.write(json, iterator.next());
+                    writer.write('\n');
+                }
+            }
+        });
+    }
+
+    /**
+     * Export the orders placed in a time range, in order date order
+     * CSV output has one row per order item
+     *
+     * @param from The earliest order time, inclusive: an ISO date or instant
+     * @param to The latest order time, exclusive: an ISO date or instant
+     * @param format The output format: ndjson (default) or csv
+     * @param gzip Whether to gzip-compress the output
+     * @return Response streaming the orders
+     */
+    @GET
+    @Path("/orders")
+    @Produces({NDJSON, CSV})
+    public Response exportOrders(
+            @QueryParam("from") String from,
+            @QueryParam("to") String to,
+            @QueryParam("format") String format,
+            @QueryParam("gzip") boolean gzip) {
+        boolean csv = parseFormat(format);
+        Stream<Order> orders = dataService.exportOrders(parseTime("from", from), parseTime("to", to));
+        return export(csv, gzip, "orders", writer -> {
+            Iterator<Order> iterator = orders.iterator();
+            if (csv) {
+                CsvWriter rows = new CsvWriter(writer);
+                rows.row("orderId", "customerId", "orderDate", "totalAmount",
+                        "bookId", "bookTitle", "quantity", "price");
+                while (iterator.hasNext()) {
+                    Order order = iterator.next();
+                    String orderDate = order.getOrderDate() == null ? null : order.getOrderDate().toInstant().toString();
+                    for (OrderItem item : order.getItems()) {
+                        rows.field(order.getId()).field(order.getCustomerId()).field(orderDate)
+                                .field(order.getTotalAmount()).field(item.getBookId()).field(item.getBookTitle())
+                                .field(item.getQuantity()).field(item.getPrice()).endRow();
+                    }
+                }
+            } else {
+                JsonWriter json = new JsonWriter(writer);
+                while (iterator.hasNext()) {
+                    ModelJson.write(json, iterator.next());
+                    writer.write('\n');
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the export rows
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Build a streaming export response
+     *
+     * @param csv Whether the output is CSV rather than NDJSON
+     * @param gzip Whether to gzip-compress the output
+     * @param name The base name of the download
+     * @param rows Writes the rows
+     * @return The response
+     */
+    private static Response export(boolean csv, boolean gzip, String name, RowWriter rows) {
+        StreamingOutput output = stream -> {
+            if (!gzip) {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+                rows.write(writer);
+                writer.flush();
+                return;
+            }
+
+            // Compress with a pooled deflater, which goes back to the pool whether or not the rows get written
+            CompressedOutputStream target = Compression.compress(stream, Compression.Coding.GZIP);
+            boolean written = false;
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8));
+                rows.write(writer);
+                writer.flush();
+                written = true;
+            } finally {
+                if (written) {
+                    target.close();
+                } else {
+                    target.abandon();
+                }
+            }
+        };
+        String fileName = name + (csv ? ".csv" : ".ndjson") + (gzip ? ".gz" : "");
+        Response.ResponseBuilder response = Response.ok(output, csv ? CSV + "; charset=UTF-8" : NDJSON)
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.build();
+    }
+
+    /**
+     * Parse the format parameter
+     *
+     * @param format The parameter value, or null
+     * @return true for CSV, false for NDJSON
+     * @throws InvalidInputException if the format isn't supported
+     */
+    private static boolean parseFormat(String format) {
+        if (format == null || format.isEmpty() || format.equalsIgnoreCase("ndjson")) {
+            return false;
+        }
+        if (format.equalsIgnoreCase("csv")) {
+            return true;
+        }
+        throw new InvalidInputException("Format must be ndjson or csv.");
+    }
+
+    /**
+     * Parse a time parameter, either an ISO date (midnight UTC) or an ISO instant
+     *
+     * @param name The parameter name
+     * @param value The parameter value, or null
+     * @return The time, or null if the parameter wasn't given
+     * @throws InvalidInputException if the value can't be parsed
+     */
+    private static Date parseTime(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            if (value.length() == 10) {
+                return Date.from(LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant());
+            }
+            return Date.from(Instant.parse(value.toUpperCase(Locale.ROOT)));
+        } catch (DateTimeParseException e) {
+            throw new InvalidInputException("Parameter " + name
+                    + " must be an ISO date (2024-01-31) or instant (2024-01-31T12:00:00Z).");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.bookstore.resources;
+
+import com.bookstore.json.Utf8Writer;
+import com.bookstore.metrics.Metrics;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Resource class exposing request metrics
+ * Serves per-route latency histograms, status code counts and mapped
+ * exception counts in the Prometheus text format, for scraping
+ */
+@Path("/metrics")
+public class MetricsResource {
+    // Prometheus text exposition format
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    
+    /**
+     * Get all metrics
+     * 
+     * @return Response with the metrics as Prometheus text
+     */
+    @GET
+    @Produces(PROMETHEUS_TEXT)
+    public Response getMetrics() {
+        StreamingOutput body = output -> {
+            try (Utf8Writer writer = new Utf8Writer(output)) {
+                Metrics.write(writer);
+            }
+        };
+        return Response.ok(body).build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.bookstore.resources;
+
+import com.bookstore.json.ModelCborProvider;
+import com.bookstore.model.Order;
+import com.bookstore.service.DataService;
+
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Resource class for looking up orders by ID
+ * Exposes an admin endpoint that finds an order without knowing the customer
+ */
+@Path("/orders")
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+public class OrderLookupResource {
+    // Data service instance
+    private final DataService dataService = DataService.getInstance();
+    
+    /**
+     * Get an order by ID
+     * 
+     * @param orderId The order ID
+     * @return Response with the order
+     */
+    @GET
+    @Path("/{orderId}")
+    public Response getOrderById(@PathParam("orderId") Long orderId) {
+        Order order = dataService.getOrderById(orderId);
+        return Response.ok(order).build();
+    }
+}
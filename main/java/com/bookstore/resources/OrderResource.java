@@ -4,48 +4,65 @@
  */
 package com.bookstore.resources;
 
+import com.bookstore.json.ModelCborProvider;
 import com.bookstore.model.Order;
 import com.bookstore.service.DataService;
+import com.bookstore.service.ServiceExecutor;
 
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Resource class for handling order-related operations
  * Exposes RESTful endpoints for managing a customer's orders
  */
 @Path("/customers/{customerId}/orders")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, ModelCborProvider.APPLICATION_CBOR})
 public class OrderResource {
     // Data service instance
     private final DataService dataService = DataService.getInstance();
     
     /**
      * Create an order from a customer's cart
+     * The response is sent once the order is placed, which happens on the
+     * order writer thread or the service executor rather than this request
+     * thread
      * 
      * @param customerId The customer ID
-     * @return Response with the created order and status 201 (Created)
+     * @return Stage completed with the created order and status 201 (Created)
      */
     @POST
-    public Response createOrder(@PathParam("customerId") Long customerId) {
-        Order createdOrder = dataService.createOrder(customerId);
-        return Response.status(Response.Status.CREATED).entity(createdOrder).build();
+    public CompletionStage<Response> createOrder(@PathParam("customerId") Long customerId) {
+        return dataService.submitOrder(customerId)
+                .thenApply(createdOrder -> Response.status(Response.Status.CREATED).entity(createdOrder).build());
     }
     
     /**
      * Get all orders for a customer
      * 
      * @param customerId The customer ID
-     * @return Response with the list of customer's orders
+     * @param request The request, for the negotiated encoding
+     * @return Stage completed with the list of customer's orders
      */
     @GET
-    public Response getCustomerOrders(@PathParam("customerId") Long customerId) {
-        List<Order> orders = dataService.getCustomerOrders(customerId);
-        return Response.ok(orders).build();
+    public CompletionStage<Response> getCustomerOrders(
+            @PathParam("customerId") Long customerId,
+            @Context Request request) {
+        return ServiceExecutor.supply(() -> {
+            List<Order> orders = dataService.getCustomerOrders(customerId);
+            
+            // The element type goes with the list, since the method's own return type doesn't name it
+            return Response.ok(new GenericEntity<List<Order>>(orders) { }, EntityTags.select(request).getMediaType())
+                    .build();
+        });
     }
     
     /**
@@ -53,14 +70,16 @@ public class OrderResource {
      * 
      * @param customerId The customer ID
      * @param orderId The order ID
-     * @return Response with the order
+     * @return Stage completed with the order
      */
     @GET
     @Path("/{orderId}")
-    public Response getCustomerOrder(
+    public CompletionStage<Response> getCustomerOrder(
             @PathParam("customerId") Long customerId,
             @PathParam("orderId") Long orderId) {
-        Order order = dataService.getCustomerOrder(customerId, orderId);
-        return Response.ok(order).build();
+        return ServiceExecutor.supply(() -> {
+            Order order = dataService.getCustomerOrder(customerId, orderId);
+            return Response.ok(order).build();
+        });
     }
 }
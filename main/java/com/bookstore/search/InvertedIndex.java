@@ -0,0 +1,116 @@
+package com.bookstore.search;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent inverted index over one text field, ranked with BM25
+ * Maps each term to the documents containing it and how often, so a query
+ * only touches the postings of its own terms instead of scanning every document.
+ * Like the other secondary indexes, a document must not be updated by two
+ * threads at once; callers hold the owning entity's lock
+ */
+public class InvertedIndex {
+    // BM25 term frequency saturation and length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // term -> (document ID -> term frequency)
+    private final ConcurrentMap<String, ConcurrentMap<Long, Integer>> postings = new ConcurrentHashMap<>();
+
+    // document ID -> number of terms
+    private final ConcurrentMap<Long, Integer> lengths = new ConcurrentHashMap<>();
+    private final AtomicLong totalLength = new AtomicLong();
+
+    /**
+     * Index a document's text
+     *
+     * @param id The document ID
+     * @param text The text to index, may be null
+     */
+    public void add(Long id, String text) {
+        List<String> terms = Tokenizer.tokenize(text);
+        if (terms.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Integer> term : frequencies(terms).entrySet()) {
+            postings.computeIfAbsent(term.getKey(), k -> new ConcurrentHashMap<>()).put(id, term.getValue());
+        }
+        lengths.put(id, terms.size());
+        totalLength.addAndGet(terms.size());
+    }
+
+    /**
+     * Remove a document, given the text it was indexed with
+     *
+     * @param id The document ID
+     * @param text The previously indexed text
+     */
+    public void remove(Long id, String text) {
+        List<String> terms = Tokenizer.tokenize(text);
+        if (terms.isEmpty()) {
+            return;
+        }
+        for (String term : frequencies(terms).keySet()) {
+            postings.computeIfPresent(term, (k, documents) -> {
+                documents.remove(id);
+                return documents.isEmpty() ? null : documents;
+            });
+        }
+        Integer length = lengths.remove(id);
+        if (length != null) {
+            totalLength.addAndGet(-length);
+        }
+    }
+
+    /**
+     * Add the BM25 score of every document matching any of the terms to a score table
+     *
+     * @param terms The distinct query terms
+     * @param weight Multiplier for this field's scores
+     * @param scores Document ID to accumulated score, updated in place
+     */
+    public void score(Collection<String> terms, double weight, Map<Long, Double> scores) {
+        long documents = lengths.size();
+        if (documents == 0) {
+            return;
+        }
+        double averageLength = Math.max(1.0, (double) totalLength.get() / documents);
+        for (String term : terms) {
+            Map<Long, Integer> matches = postings.get(term);
+            if (matches == null) {
+                continue;
+            }
+            int frequency = matches.size();
+            double idf = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+            for (Map.Entry<Long, Integer> match : matches.entrySet()) {
+                Integer length = lengths.get(match.getKey());
+                double tf = match.getValue();
+                double norm = K1 * (1 - B + B * (length == null ? averageLength : length) / averageLength);
+                scores.merge(match.getKey(), weight * idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+            }
+        }
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        postings.clear();
+        lengths.clear();
+        totalLength.set(0);
+    }
+
+    private static Map<String, Integer> frequencies(List<String> terms) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+}
@@ -0,0 +1,62 @@
+package com.bookstore.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into normalized search terms
+ * Terms are lower-cased runs of letters and digits with accents removed, so
+ * accented and plain spellings match. Single letters and common English stop
+ * words are dropped, since they would match nearly every document
+ */
+public final class Tokenizer {
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it",
+            "of", "on", "or", "the", "to", "was", "with"));
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Tokenize text
+     *
+     * @param text The text, may be null
+     * @return The terms in text order, including repeats
+     */
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return terms;
+        }
+
+        // Decompose accented characters so the accents can be skipped as non-letters
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKD).toLowerCase(Locale.ROOT);
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                term.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                addTerm(terms, term);
+            }
+        }
+        addTerm(terms, term);
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, StringBuilder term) {
+        if (term.length() == 0) {
+            return;
+        }
+        String value = term.toString();
+        term.setLength(0);
+        if ((value.length() > 1 || Character.isDigit(value.charAt(0))) && !STOP_WORDS.contains(value)) {
+            terms.add(value);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.bookstore.service;
+
+/**
+ * Filters, ordering and position for a book listing
+ * Unset (null) fields don't restrict the result
+ */
+public class BookQuery {
+
+    /**
+     * Orderings backed by a sorted index
+     */
+    public enum Sort {
+        PRICE,
+        YEAR,
+        TITLE
+    }
+
+    private Double minPrice;
+    private Double maxPrice;
+    private Integer yearFrom;
+    private Integer yearTo;
+    private Sort sort;
+    private Long afterId;
+
+    // Default constructor
+    public BookQuery() {
+    }
+
+    /**
+     * Check whether the query filters or sorts, rather than listing every book in ID order
+     *
+     * @return true if any filter or a sort is set
+     */
+    public boolean isFilteredOrSorted() {
+        return minPrice != null || maxPrice != null || yearFrom != null || yearTo != null || sort != null;
+    }
+
+    // Getters and Setters
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Integer getYearFrom() {
+        return yearFrom;
+    }
+
+    public void setYearFrom(Integer yearFrom) {
+        this.yearFrom = yearFrom;
+    }
+
+    public Integer getYearTo() {
+        return yearTo;
+    }
+
+    public void setYearTo(Integer yearTo) {
+        this.yearTo = yearTo;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public void setSort(Sort sort) {
+        this.sort = sort;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public void setAfterId(Long afterId) {
+        this.afterId = afterId;
+    }
+}
@@ -14,15 +14,83 @@ import com.bookstore.model.CartItem;
 import com.bookstore.model.Customer;
 import com.bookstore.model.Order;
 import com.bookstore.model.OrderItem;
+import com.bookstore.model.Versions;
+import com.bookstore.config.Settings;
+import com.bookstore.persistence.Journal;
+import com.bookstore.persistence.RecordCodec;
+import com.bookstore.persistence.RecordType;
+import com.bookstore.persistence.Snapshot;
+import com.bookstore.search.InvertedIndex;
+import com.bookstore.search.Tokenizer;
+import com.bookstore.store.EntityStore;
+import com.bookstore.store.MultiValueIndex;
+import com.bookstore.store.OrderedEntityStore;
+import com.bookstore.store.SortedIndex;
+import com.bookstore.store.UniqueIndex;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Service class that simulates database operations using in-memory data structures
  * Provides methods to manage books, authors, customers, carts, and orders
+ *
+ * The singleton is shared by every request thread. Consistency per operation:
+ * - Single-entity reads and writes (get/create/update/delete) are atomic
+ * - Listings are weakly consistent snapshots and never block writers
+ * - Cart mutations and checkout are serialized per customer by locking the cart
+ * - Checkout takes stock for all items or none, using per-book compare-and-set
+ *
+ * When bookstore.data.dir is set, every mutation is appended to a write-ahead
+ * journal while the entity is locked and made durable (per the configured
+ * sync policy) before the method returns. A background checkpoint periodically
+ * folds closed journal segments into a binary snapshot; startup loads the latest
+ * snapshot and replays only the journal written after it
+ *
+ * Books, authors and carts carry a version that advances after every change,
+ * and the author listing, book listing and each author's book list have one
+ * of their own, so callers can tell whether an entity or listing changed
+ * without comparing its contents
  */
 public class DataService {
+    // Persistence settings
+    private static final String DATA_DIR_SETTING = "bookstore.data.dir";
+    private static final String JOURNAL_SYNC_SETTING = "bookstore.journal.sync";
+    private static final String JOURNAL_INTERVAL_SETTING = "bookstore.journal.syncIntervalMs";
+    private static final String SNAPSHOT_INTERVAL_SETTING = "bookstore.snapshot.intervalSec";
+    private static final String SAMPLE_DATA_SETTING = "bookstore.sampleData";
+    private static final String ORDER_PIPELINE_SETTING = "bookstore.orders.pipeline";
+    private static final String ORDER_PIPELINE_CAPACITY_SETTING = "bookstore.orders.pipeline.capacity";
+    private static final String ORDER_PIPELINE_BATCH_SETTING = "bookstore.orders.pipeline.batchSize";
+    private static final String CART_RESERVATIONS_SETTING = "bookstore.cart.reservations";
+    private static final String CART_RESERVATION_TTL_SETTING = "bookstore.cart.reservationTtlSec";
+    
+    // Relative weight of each searchable field in the search ranking
+    private static final double TITLE_WEIGHT = 1.0;
+    private static final double AUTHOR_NAME_WEIGHT = 0.8;
+    private static final double BIOGRAPHY_WEIGHT = 0.3;
+    
+    private static final Logger LOGGER = Logger.getLogger(DataService.class.getName());
+    
     // Singleton instance
     private static final DataService instance = new DataService();
     
@@ -32,17 +100,123 @@ public class DataService {
     private final AtomicLong customerIdCounter = new AtomicLong(1);
     private final AtomicLong orderIdCounter = new AtomicLong(1);
     
-    // In-memory data storage using Maps
-    private final Map<Long, Book> books = new HashMap<>();
-    private final Map<Long, Author> authors = new HashMap<>();
-    private final Map<Long, Customer> customers = new HashMap<>();
-    private final Map<Long, Cart> carts = new HashMap<>();
-    private final Map<Long, List<Order>> customerOrders = new HashMap<>();
+    // In-memory data storage using concurrent entity stores
+    private final OrderedEntityStore<Book> books = new OrderedEntityStore<>();
+    private final EntityStore<Author> authors = new EntityStore<>();
+    private final EntityStore<Customer> customers = new EntityStore<>();
+    private final EntityStore<Cart> carts = new EntityStore<>();
+    private final EntityStore<Order> orders = new EntityStore<>();
+    private final EntityStore<ConcurrentNavigableMap<Long, Order>> customerOrders = new EntityStore<>();
+    
+    // Secondary indexes, maintained by every book mutation
+    private final MultiValueIndex<Long> booksByAuthor = new MultiValueIndex<>();
+    private final UniqueIndex<String> customersByEmail = new UniqueIndex<>();
+    private final UniqueIndex<String> booksByIsbn = new UniqueIndex<>();
+    private final SortedIndex<Double> booksByPrice = new SortedIndex<>();
+    private final SortedIndex<Integer> booksByYear = new SortedIndex<>();
+    private final SortedIndex<String> booksByTitle = new SortedIndex<>();
+    private final SortedIndex<Long> ordersByDate = new SortedIndex<>();
+    
+    // Version of the author listing, advanced after every author mutation
+    private final AtomicLong authorsVersion = new AtomicLong(Versions.next());
+    
+    // Version of the full book listing, advanced after every book or stock change
+    private final AtomicLong booksVersion = new AtomicLong(Versions.next());
+    
+    // Versions of the book list and of each author's books, advanced when a book is added, changed or
+    // removed but not when only stock moves; each book's own version covers its stock
+    private final AtomicLong bookListVersion = new AtomicLong(Versions.next());
+    private final Map<Long, Long> authorBooksVersions = new ConcurrentHashMap<>();
+    
+    // Full-text indexes; author fields are indexed once per author, not per book
+    private final InvertedIndex bookTitles = new InvertedIndex();
+    private final InvertedIndex authorNames = new InvertedIndex();
+    private final InvertedIndex authorBiographies = new InvertedIndex();
+    
+    // Write-ahead journal, or null when persistence is disabled
+    private final Journal journal;
+    
+    // Serializes checkpoints
+    private final Object checkpointLock = new Object();
+    
+    // Shared by checkouts from taking stock to journaling the order, exclusive for book updates,
+    // whose PUT_BOOK records carry absolute stock
+    private final ReadWriteLock stockLock = new ReentrantReadWriteLock();
+    
+    // Single-writer checkout pipeline, or null when checkouts run on the request thread
+    private final OrderPipeline orderPipeline;
+    
+    // Stock held for cart items by customer and book ID; a customer's holds only change under their cart lock
+    private final Map<Long, Map<Long, StockHold>> stockHolds = new ConcurrentHashMap<>();
+    
+    // Expires stock holds, or null when adding to a cart holds no stock
+    private final TimerWheel<StockHold> holdExpiry;
+    private final long holdTtlMillis;
+    
+    /**
+     * Stock taken from a book on behalf of a cart item until checkout or expiry
+     * Holds are transient: they are never journaled, so a restart returns the stock
+     */
+    private static final class StockHold {
+        final Long customerId;
+        final Long bookId;
+        
+        // The instance the stock was taken from; the hold is stale once the book is replaced
+        final Book book;
+        final int quantity;
+        TimerWheel.Timeout<StockHold> timeout;
+        
+        StockHold(Long customerId, Long bookId, Book book, int quantity) {
+            this.customerId = customerId;
+            this.bookId = bookId;
+            this.book = book;
+            this.quantity = quantity;
+        }
+    }
     
     // Private constructor for singleton pattern
     private DataService() {
-        // Initialize with some sample data
-        initSampleData();
+        this(openJournal(), true);
+    }
+    
+    /**
+     * Create a service over a journal
+     * 
+     * @param journal The journal, or null for a service that isn't persisted
+     * @param bootstrap Whether to restore persisted state (or sample data) and schedule checkpoints;
+     *                  false for the empty shadow copy a checkpoint is built in
+     */
+    private DataService(Journal journal, boolean bootstrap) {
+        this.journal = journal;
+        if (!bootstrap) {
+            orderPipeline = null;
+            holdExpiry = null;
+            holdTtlMillis = 0;
+            return;
+        }
+        
+        // Rebuild state from the snapshot and journal, or start from sample data if there is none
+        boolean restored = journal != null && recover();
+        if (!restored && Settings.getBoolean(SAMPLE_DATA_SETTING, true)) {
+            initSampleData();
+            journalSampleData();
+        }
+        
+        if (journal != null) {
+            scheduleCheckpoints();
+        }
+        
+        // Hand checkouts to a single writer thread if configured
+        orderPipeline = Settings.getBoolean(ORDER_PIPELINE_SETTING, false)
+                ? new OrderPipeline(Settings.getInt(ORDER_PIPELINE_CAPACITY_SETTING, 4096),
+                        Settings.getInt(ORDER_PIPELINE_BATCH_SETTING, 256), this::placeOrder, this::commit)
+                : null;
+        
+        // Hold stock for cart items if configured; expired holds are released a tick at a time
+        holdTtlMillis = TimeUnit.SECONDS.toMillis(Settings.getLong(CART_RESERVATION_TTL_SETTING, 900));
+        holdExpiry = Settings.getBoolean(CART_RESERVATIONS_SETTING, false)
+                ? new TimerWheel<>(1000, this::expireHolds, "stock-hold-expiry")
+                : null;
     }
     
     // Initialize sample data
@@ -52,30 +226,34 @@ public class DataService {
                 "British author best known for the Harry Potter series.");
         Author author2 = new Author(authorIdCounter.getAndIncrement(), "George Orwell", 
                 "English novelist, essayist, and critic.");
-        authors.put(author1.getId(), author1);
-        authors.put(author2.getId(), author2);
+        for (Author author : Arrays.asList(author1, author2)) {
+            authors.put(author.getId(), author);
+            indexAuthor(author);
+        }
         
         // Create sample books
         Book book1 = new Book(bookIdCounter.getAndIncrement(), "Harry Potter and the Philosopher's Stone", 
                 author1.getId(), "978-0-7475-3269-9", 1997, 15.99, 100);
         Book book2 = new Book(bookIdCounter.getAndIncrement(), "Harry Potter and the Chamber of Secrets", 
-                author1.getId(), "978-0-7475-3849-9", 1998, 16.99, 85);
+                author1.getId(), "978-0-7475-3849-3", 1998, 16.99, 85);
         Book book3 = new Book(bookIdCounter.getAndIncrement(), "1984", 
                 author2.getId(), "978-0-451-52493-5", 1949, 12.99, 50);
-        books.put(book1.getId(), book1);
-        books.put(book2.getId(), book2);
-        books.put(book3.getId(), book3);
+        for (Book book : Arrays.asList(book1, book2, book3)) {
+            books.put(book.getId(), book);
+            indexBook(book);
+        }
         
         // Create sample customers
         Customer customer1 = new Customer(customerIdCounter.getAndIncrement(), "John Doe", 
                 "john.doe@example.com", "password123");
         customers.put(customer1.getId(), customer1);
+        customersByEmail.claim(normalizeEmail(customer1.getEmail()), customer1.getId());
         
         // Create empty cart for the customer
         carts.put(customer1.getId(), new Cart(customer1.getId()));
         
-        // Initialize empty order list for the customer
-        customerOrders.put(customer1.getId(), new ArrayList<>());
+        // Initialize empty order map for the customer
+        customerOrders.put(customer1.getId(), new ConcurrentSkipListMap<>());
     }
     
     // Get singleton instance
@@ -83,6 +261,17 @@ public class DataService {
         return instance;
     }
     
+    /**
+     * Create a service separate from the shared instance, without persistence
+     * It starts with the sample data unless bookstore.sampleData is false; meant
+     * for benchmarks and tools that need a data set of their own
+     * 
+     * @return The new service
+     */
+    public static DataService createUnpersisted() {
+        return new DataService(null, true);
+    }
+    
     // Book-related methods
     
     /**
@@ -97,18 +286,105 @@ public class DataService {
         // Validate book
         validateBook(book);
         
+        // Add to the collection while holding the author, so the author can't be deleted in between
+        long[] seq = new long[1];
+        Author author = authors.computeIfPresent(book.getAuthorId(), (authorId, existing) -> {
+            // Generate ID for new book
+            book.setId(bookIdCounter.getAndIncrement());
+            
+            // Claim the ISBN atomically, failing if another book has it
+            if (!booksByIsbn.claim(Isbn.normalize(book.getIsbn()), book.getId())) {
+                throw new InvalidInputException("ISBN is already in use by another book.");
+            }
+            book.touch();
+            books.put(book.getId(), book);
+            indexBook(book);
+            seq[0] = journal(RecordType.PUT_BOOK, out -> RecordCodec.writeBook(out, book));
+            return existing;
+        });
+        
         // Check if author exists
-        if (!authors.containsKey(book.getAuthorId())) {
+        if (author == null) {
             throw new AuthorNotFoundException(book.getAuthorId());
         }
+        bookChanged(book);
+        
+        commit(seq[0]);
+        return book;
+    }
+    
+    /**
+     * Create many books as one batch
+     * Books are validated in parallel; then each author's books are added while
+     * holding the author once, and the whole batch is made durable with a single
+     * journal sync instead of one per book
+     * 
+     * @param batch The books to create
+     * @return One entry per book, in batch order: null if the book was created
+     *         (its ID is set), otherwise the exception that rejected it
+     */
+    public List<RuntimeException> createBooks(List<Book> batch) {
+        RuntimeException[] failures = new RuntimeException[batch.size()];
+        
+        // Validate books in parallel
+        IntStream.range(0, batch.size()).parallel().forEach(i -> {
+            try {
+                validateBook(batch.get(i));
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        });
         
-        // Generate ID for new book
-        book.setId(bookIdCounter.getAndIncrement());
+        // Group the valid books by author, keeping their batch positions
+        Map<Long, List<Integer>> byAuthor = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] != null) {
+                continue;
+            }
+            Long authorId = batch.get(i).getAuthorId();
+            if (authorId == null) {
+                failures[i] = new AuthorNotFoundException(authorId);
+                continue;
+            }
+            byAuthor.computeIfAbsent(authorId, key -> new ArrayList<>()).add(i);
+        }
         
-        // Add to the collection
-        books.put(book.getId(), book);
+        // Add each author's books while holding the author, so it can't be deleted in between
+        long[] seq = new long[1];
+        for (Map.Entry<Long, List<Integer>> group : byAuthor.entrySet()) {
+            Author author = authors.computeIfPresent(group.getKey(), (authorId, existing) -> {
+                for (int i : group.getValue()) {
+                    Book book = batch.get(i);
+                    
+                    // Generate ID for new book
+                    book.setId(bookIdCounter.getAndIncrement());
+                    
+                    // Claim the ISBN atomically, rejecting this book if another book has it
+                    if (!booksByIsbn.claim(Isbn.normalize(book.getIsbn()), book.getId())) {
+                        failures[i] = new InvalidInputException("ISBN is already in use by another book.");
+                        book.setId(null);
+                        continue;
+                    }
+                    book.touch();
+                    books.put(book.getId(), book);
+                    indexBook(book);
+                    seq[0] = journal(RecordType.PUT_BOOK, out -> RecordCodec.writeBook(out, book));
+                }
+                return existing;
+            });
+            
+            // Check if author exists
+            if (author == null) {
+                for (int i : group.getValue()) {
+                    failures[i] = new AuthorNotFoundException(group.getKey());
+                }
+            } else {
+                bookListChanged(group.getKey());
+            }
+        }
         
-        return book;
+        commit(seq[0]);
+        return Arrays.asList(failures);
     }
     
     /**
@@ -117,7 +393,131 @@ public class DataService {
      * @return List of all books
      */
     public List<Book> getAllBooks() {
-        return new ArrayList<>(books.values());
+        return books.snapshot();
+    }
+    
+    /**
+     * Get one page of books in ID order (keyset pagination)
+     * 
+     * @param afterId Only books with a greater ID are returned, or null to start from the first book
+     * @param limit The maximum number of books to return
+     * @return List of at most limit books
+     * @throws InvalidInputException if the limit is not positive
+     */
+    public List<Book> getBooksPage(Long afterId, int limit) {
+        if (limit <= 0) {
+            throw new InvalidInputException("Limit must be greater than zero.");
+        }
+        return books.page(afterId, limit);
+    }
+    
+    /**
+     * Get a live view of the books after an ID, in ID order
+     * The view is weakly consistent and copies nothing, so it can be streamed
+     * 
+     * @param afterId Only books with a greater ID are included, or null for all books
+     * @return Collection view of the books
+     */
+    public Collection<Book> getBooksAfter(Long afterId) {
+        return books.valuesAfter(afterId);
+    }
+    
+    /**
+     * Find books matching price and year ranges, in the requested order
+     * Results come from walking a sorted index: the sort field's index, or without
+     * a sort the index of a filtered field (price, then year), or else ID order.
+     * The stream is lazy and weakly consistent, so it can be paged or streamed
+     * without copying; each book is re-checked against the filters when read
+     * 
+     * @param query The filters, sort and position (ID of the last book of the previous page)
+     * @return Lazy stream of matching books
+     * @throws InvalidInputException if a range is inverted or the position book no longer exists
+     */
+    public Stream<Book> findBooks(BookQuery query) {
+        Double minPrice = query.getMinPrice();
+        Double maxPrice = query.getMaxPrice();
+        Integer yearFrom = query.getYearFrom();
+        Integer yearTo = query.getYearTo();
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new InvalidInputException("Minimum price cannot be greater than maximum price.");
+        }
+        if (yearFrom != null && yearTo != null && yearFrom > yearTo) {
+            throw new InvalidInputException("Start year cannot be after end year.");
+        }
+        
+        Predicate<Book> filter = book ->
+                (minPrice == null || book.getPrice() >= minPrice)
+                && (maxPrice == null || book.getPrice() <= maxPrice)
+                && (yearFrom == null || book.getPublicationYear() >= yearFrom)
+                && (yearTo == null || book.getPublicationYear() <= yearTo);
+        
+        // Pick the index that gives the requested order and narrows the range the most
+        BookQuery.Sort sort = query.getSort();
+        if (sort == null) {
+            if (minPrice != null || maxPrice != null) {
+                sort = BookQuery.Sort.PRICE;
+            } else if (yearFrom != null || yearTo != null) {
+                sort = BookQuery.Sort.YEAR;
+            } else {
+                return getBooksAfter(query.getAfterId()).stream();
+            }
+        }
+        switch (sort) {
+            case PRICE:
+                return walkIndex(booksByPrice, Book::getPrice, minPrice, maxPrice, query.getAfterId(), filter);
+            case YEAR:
+                return walkIndex(booksByYear, Book::getPublicationYear, yearFrom, yearTo, query.getAfterId(), filter);
+            default:
+                return walkIndex(booksByTitle, DataService::titleKey, null, null, query.getAfterId(), filter);
+        }
+    }
+    
+    /**
+     * Walk a sorted book index over a key range
+     * 
+     * @param index The sorted index
+     * @param key Extracts the indexed key from a book
+     * @param from The smallest key, or null
+     * @param to The largest key, or null
+     * @param afterId ID of the book to continue after, or null to start at the range start
+     * @param filter The remaining filters
+     * @return Lazy stream of matching books in index order
+     * @throws InvalidInputException if the book to continue after no longer exists
+     */
+    private <K extends Comparable<? super K>> Stream<Book> walkIndex(SortedIndex<K> index,
+            Function<Book, K> key, K from, K to, Long afterId, Predicate<Book> filter) {
+        // Resolve the position from the book's current key
+        K afterKey = null;
+        if (afterId != null) {
+            Book after = books.get(afterId);
+            if (after == null) {
+                throw new InvalidInputException("Book with ID " + afterId + " no longer exists; restart the listing.");
+            }
+            afterKey = key.apply(after);
+        }
+        
+        // Skip entries for books deleted or re-keyed since the entry was read, so no book appears twice
+        return index.range(from, to, afterKey, afterId).stream()
+                .map(entry -> {
+                    Book book = books.get(entry.getId());
+                    return book != null && entry.getKey().equals(key.apply(book)) ? book : null;
+                })
+                .filter(book -> book != null && filter.test(book));
+    }
+    
+    /**
+     * Get every book in ID order, for export
+     * Books created after the call are left out, so a long-running export has
+     * a fixed end. Nothing is locked or copied: each book is read as it is
+     * written out, so checkout is never blocked and each row is a consistent
+     * book, but stock can move between rows
+     * 
+     * @return Lazy stream of books
+     */
+    public Stream<Book> exportBooks() {
+        long cutoff = bookIdCounter.get();
+        return books.valuesAfter(null).stream()
+                .takeWhile(book -> book.getId() < cutoff);
     }
     
     /**
@@ -135,6 +535,22 @@ public class DataService {
         return book;
     }
     
+    /**
+     * Get a book by ISBN
+     * Hyphens and spaces are ignored, and ISBN-10 and ISBN-13 forms of the same number match
+     * 
+     * @param isbn The ISBN
+     * @return The book
+     * @throws BookNotFoundException if no book has the ISBN
+     */
+    public Book getBookByIsbn(String isbn) {
+        Book book = books.get(booksByIsbn.get(Isbn.normalize(isbn)));
+        if (book == null) {
+            throw new BookNotFoundException("Book with ISBN " + isbn + " not found.");
+        }
+        return book;
+    }
+    
     /**
      * Update an existing book
      * 
@@ -147,22 +563,47 @@ public class DataService {
      */
     public Book updateBook(Long id, Book book) {
         // Check if book exists
-        if (!books.containsKey(id)) {
+        if (!books.contains(id)) {
             throw new BookNotFoundException(id);
         }
         
         // Validate book
         validateBook(book);
         
+        // Update the book while holding the new author, failing if either was deleted concurrently;
+        // no checkout may be between taking stock and journaling its order, see placeOrder
+        book.setId(id);
+        Book[] replaced = new Book[1];
+        long[] seq = new long[1];
+        Author author;
+        stockLock.writeLock().lock();
+        try {
+            author = authors.computeIfPresent(book.getAuthorId(), (authorId, existing) -> {
+                books.computeIfPresent(id, (key, previous) -> {
+                    // Fails before changing anything if the new ISBN is already in use by another book
+                    reindexBook(previous, book);
+                    replaced[0] = previous;
+                    book.touch();
+                    seq[0] = journal(RecordType.PUT_BOOK, out -> RecordCodec.writeBook(out, book));
+                    return book;
+                });
+                return existing;
+            });
+        } finally {
+            stockLock.writeLock().unlock();
+        }
+        
         // Check if author exists
-        if (!authors.containsKey(book.getAuthorId())) {
+        if (author == null) {
             throw new AuthorNotFoundException(book.getAuthorId());
         }
+        if (replaced[0] == null) {
+            throw new BookNotFoundException(id);
+        }
+        bookChanged(replaced[0]);
+        bookChanged(book);
         
-        // Update the book
-        book.setId(id);
-        books.put(id, book);
-        
+        commit(seq[0]);
         return book;
     }
     
@@ -173,13 +614,23 @@ public class DataService {
      * @throws BookNotFoundException if the book doesn't exist
      */
     public void deleteBook(Long id) {
-        // Check if book exists
-        if (!books.containsKey(id)) {
+        // Remove the book and its index entries
+        Book[] removed = new Book[1];
+        long[] seq = new long[1];
+        books.computeIfPresent(id, (key, existing) -> {
+            unindexBook(existing);
+            removed[0] = existing;
+            seq[0] = journal(RecordType.DELETE_BOOK, out -> RecordCodec.writeLong(out, key));
+            return null;
+        });
+        
+        // Check if book existed
+        if (removed[0] == null) {
             throw new BookNotFoundException(id);
         }
+        bookChanged(removed[0]);
         
-        // Remove the book
-        books.remove(id);
+        commit(seq[0]);
     }
     
     /**
@@ -191,14 +642,220 @@ public class DataService {
      */
     public List<Book> getBooksByAuthor(Long authorId) {
         // Check if author exists
-        if (!authors.containsKey(authorId)) {
+        if (!authors.contains(authorId)) {
+            throw new AuthorNotFoundException(authorId);
+        }
+        
+        // Look up the author's books through the index
+        List<Book> authorBooks = new ArrayList<>();
+        for (Long bookId : booksByAuthor.get(authorId)) {
+            Book book = books.get(bookId);
+            if (book != null) {
+                authorBooks.add(book);
+            }
+        }
+        return authorBooks;
+    }
+    
+    /**
+     * Get the version of the book listing
+     * Read it before the listing: a listing read afterwards is at least as new
+     * 
+     * @return The version, which changes whenever a book or its stock changes
+     */
+    public long getBooksVersion() {
+        return booksVersion.get();
+    }
+    
+    /**
+     * Get the version of the book list, not counting stock
+     * A listing of some of the books is as new as the newest of this version
+     * and the versions of the books in it. Read it before the books
+     * 
+     * @return The version, which changes whenever a book is added, changed or removed
+     */
+    public long getBookListVersion() {
+        return bookListVersion.get();
+    }
+    
+    /**
+     * Get the version of an author's book list, not counting stock
+     * The list is as new as the newest of this version and the versions of
+     * its books. Read it before the list
+     * 
+     * @param authorId The author ID
+     * @return The version, which changes whenever one of the author's books is added, changed or removed
+     * @throws AuthorNotFoundException if the author doesn't exist
+     */
+    public long getAuthorBooksVersion(Long authorId) {
+        if (!authors.contains(authorId)) {
             throw new AuthorNotFoundException(authorId);
         }
+        return authorBooksVersions.getOrDefault(authorId, 0L);
+    }
+    
+    /**
+     * Advance the versions of the listings a book appears in
+     * Called after the change is visible, so a listing read at the old version can't miss it
+     * 
+     * @param book The changed book
+     */
+    private void bookChanged(Book book) {
+        bookListChanged(book.getAuthorId());
+    }
+    
+    /**
+     * Advance the version of the full book listing after a stock change
+     * The book's own version has moved already; lists keyed on book versions
+     * need nothing more
+     * 
+     * @param book The book whose stock changed
+     */
+    private void stockChanged(Book book) {
+        Versions.advance(booksVersion);
+    }
+    
+    // Advance the book listing and book list versions and one author's book list version
+    private void bookListChanged(Long authorId) {
+        Versions.advance(booksVersion);
+        Versions.advance(bookListVersion);
+        if (authorId != null) {
+            authorBooksVersions.merge(authorId, Versions.next(), Math::max);
+        }
+    }
+    
+    /**
+     * Add a book to the secondary indexes
+     * Called while the book's entry is locked in the store
+     * 
+     * @param book The book to index
+     * @throws InvalidInputException if another book holds its ISBN
+     */
+    private void indexBook(Book book) {
+        claimIsbn(book);
+        addBookEntries(book);
+    }
+    
+    /**
+     * Remove a book from the secondary indexes
+     * Called while the book's entry is locked in the store
+     * 
+     * @param book The book to remove
+     */
+    private void unindexBook(Book book) {
+        booksByIsbn.release(Isbn.normalize(book.getIsbn()), book.getId());
+        removeBookEntries(book);
+    }
+    
+    /**
+     * Replace a book's previous version with its new one in the secondary indexes
+     * Called while the book's entry is locked in the store. The ISBN is only
+     * released when it changes; released and claimed again, another book could
+     * take it in between
+     * 
+     * @param previous The version being replaced
+     * @param book The new version
+     * @throws InvalidInputException if the new ISBN is held by another book
+     */
+    private void reindexBook(Book previous, Book book) {
+        claimIsbn(book);
+        String previousIsbn = Isbn.normalize(previous.getIsbn());
+        if (!Objects.equals(previousIsbn, Isbn.normalize(book.getIsbn()))) {
+            booksByIsbn.release(previousIsbn, previous.getId());
+        }
+        removeBookEntries(previous);
+        addBookEntries(book);
+    }
+    
+    // Claim a book's ISBN, failing if another book holds it
+    private void claimIsbn(Book book) {
+        String isbn = Isbn.normalize(book.getIsbn());
+        if (isbn != null && !booksByIsbn.claim(isbn, book.getId())) {
+            throw new InvalidInputException("ISBN is already in use by another book.");
+        }
+    }
+    
+    // Add a book to every secondary index but the ISBN one
+    private void addBookEntries(Book book) {
+        booksByAuthor.add(book.getAuthorId(), book.getId());
+        bookTitles.add(book.getId(), book.getTitle());
+        booksByPrice.add(book.getPrice(), book.getId());
+        booksByYear.add(book.getPublicationYear(), book.getId());
+        booksByTitle.add(titleKey(book), book.getId());
+    }
+    
+    // Remove a book from every secondary index but the ISBN one
+    private void removeBookEntries(Book book) {
+        booksByAuthor.remove(book.getAuthorId(), book.getId());
+        bookTitles.remove(book.getId(), book.getTitle());
+        booksByPrice.remove(book.getPrice(), book.getId());
+        booksByYear.remove(book.getPublicationYear(), book.getId());
+        booksByTitle.remove(titleKey(book), book.getId());
+    }
+    
+    /**
+     * Get the key books are sorted by for title ordering
+     * 
+     * @param book The book
+     * @return The lower-cased title, or null
+     */
+    private static String titleKey(Book book) {
+        return book.getTitle() == null ? null : book.getTitle().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Search books by title and by their author's name and biography
+     * Any query word may match; results are ranked by BM25 relevance
+     * 
+     * @param query The search text
+     * @param limit The maximum number of books to return
+     * @return The best matching books, most relevant first
+     * @throws InvalidInputException if the query has no searchable words or the limit is not positive
+     */
+    public List<Book> searchBooks(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(Tokenizer.tokenize(query));
+        if (terms.isEmpty()) {
+            throw new InvalidInputException("Search query must contain at least one word.");
+        }
+        if (limit <= 0) {
+            throw new InvalidInputException("Limit must be greater than zero.");
+        }
+        
+        // Score titles directly, and authors once each before spreading their score to their books
+        Map<Long, Double> scores = new HashMap<>();
+        bookTitles.score(terms, TITLE_WEIGHT, scores);
+        Map<Long, Double> authorScores = new HashMap<>();
+        authorNames.score(terms, AUTHOR_NAME_WEIGHT, authorScores);
+        authorBiographies.score(terms, BIOGRAPHY_WEIGHT, authorScores);
+        for (Map.Entry<Long, Double> author : authorScores.entrySet()) {
+            for (Long bookId : booksByAuthor.get(author.getKey())) {
+                scores.merge(bookId, author.getValue(), Double::sum);
+            }
+        }
         
-        // Filter books by author ID
-        return books.values().stream()
-                .filter(book -> book.getAuthorId().equals(authorId))
-                .collect(Collectors.toList());
+        // Keep the top results in a bounded min-heap; ties go to the lower ID
+        Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(ranking);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            if (top.size() < limit) {
+                top.add(entry);
+            } else if (ranking.compare(entry, top.peek()) > 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+        
+        // Resolve the books, best first, skipping any deleted in the meantime
+        List<Book> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Book book = books.get(top.poll().getKey());
+            if (book != null) {
+                results.add(book);
+            }
+        }
+        Collections.reverse(results);
+        return results;
     }
     
     /**
@@ -216,6 +873,10 @@ public class DataService {
             throw new InvalidInputException("Book ISBN cannot be empty.");
         }
         
+        if (Isbn.normalize(book.getIsbn()) == null) {
+            throw new InvalidInputException("Book ISBN must be a valid ISBN-10 or ISBN-13.");
+        }
+        
         if (book.getPublicationYear() > Calendar.getInstance().get(Calendar.YEAR)) {
             throw new InvalidInputException("Publication year cannot be in the future.");
         }
@@ -246,20 +907,35 @@ public class DataService {
     // Validate author fields
     validateAuthor(author);
 
-    // If client provided an ID and it's not already taken, use it
-    if (author.getId() != null) {
-        if (authors.containsKey(author.getId())) {
-            throw new InvalidInputException("Author ID already exists.");
-        }
-    } else {
-        // Otherwise, generate a new ID
+    // Generate ID for new author, unless the client provided one
+    if (author.getId() == null) {
         long newAuthorId = authorIdCounter.getAndIncrement();
         author.setId(newAuthorId);
     }
 
-    // Store the author
-    authors.put(author.getId(), author);
+    // Store the author, claiming the ID atomically so concurrent creates can't both take it
+    long[] seq = new long[1];
+    boolean[] created = new boolean[1];
+    authors.compute(author.getId(), (authorId, existing) -> {
+        if (existing != null) {
+            return existing;
+        }
+        created[0] = true;
+        author.touch();
+        indexAuthor(author);
+        seq[0] = journal(RecordType.PUT_AUTHOR, out -> RecordCodec.writeAuthor(out, author));
+        return author;
+    });
+
+    if (!created[0]) {
+        throw new InvalidInputException("Author ID already exists.");
+    }
 
+    // Keep generated IDs clear of client-chosen ones
+    advanceCounter(authorIdCounter, author.getId());
+    Versions.advance(authorsVersion);
+
+    commit(seq[0]);
     return author;
 }
 
@@ -269,7 +945,17 @@ public class DataService {
      * @return List of all authors
      */
     public List<Author> getAllAuthors() {
-        return new ArrayList<>(authors.values());
+        return authors.snapshot();
+    }
+    
+    /**
+     * Get the version of the author listing
+     * Read it before the listing: a listing read afterwards is at least as new
+     * 
+     * @return The version, which changes whenever an author is created, updated or deleted
+     */
+    public long getAuthorsVersion() {
+        return authorsVersion.get();
     }
     
     /**
@@ -298,17 +984,30 @@ public class DataService {
      */
     public Author updateAuthor(Long id, Author author) {
         // Check if author exists
-        if (!authors.containsKey(id)) {
+        if (!authors.contains(id)) {
             throw new AuthorNotFoundException(id);
         }
         
         // Validate author
         validateAuthor(author);
         
-        // Update the author
+        // Update the author, failing if it was deleted concurrently
         author.setId(id);
-        authors.put(id, author);
+        long[] seq = new long[1];
+        Author updated = authors.computeIfPresent(id, (key, existing) -> {
+            unindexAuthor(existing);
+            indexAuthor(author);
+            author.touch();
+            seq[0] = journal(RecordType.PUT_AUTHOR, out -> RecordCodec.writeAuthor(out, author));
+            return author;
+        });
+        
+        if (updated == null) {
+            throw new AuthorNotFoundException(id);
+        }
+        Versions.advance(authorsVersion);
         
+        commit(seq[0]);
         return author;
     }
     
@@ -320,21 +1019,28 @@ public class DataService {
      * @throws InvalidInputException if author has books
      */
     public void deleteAuthor(Long id) {
-        // Check if author exists
-        if (!authors.containsKey(id)) {
+        // Remove the author unless it has books; holding the author blocks concurrent book creation
+        boolean[] removed = new boolean[1];
+        long[] seq = new long[1];
+        authors.computeIfPresent(id, (authorId, existing) -> {
+            // Check if author has books
+            if (booksByAuthor.containsKey(authorId)) {
+                throw new InvalidInputException("Cannot delete author with existing books.");
+            }
+            unindexAuthor(existing);
+            removed[0] = true;
+            seq[0] = journal(RecordType.DELETE_AUTHOR, out -> RecordCodec.writeLong(out, authorId));
+            return null;
+        });
+        
+        // Check if author existed
+        if (!removed[0]) {
             throw new AuthorNotFoundException(id);
         }
+        authorBooksVersions.remove(id);
+        Versions.advance(authorsVersion);
         
-        // Check if author has books
-        boolean hasBooks = books.values().stream()
-                .anyMatch(book -> book.getAuthorId().equals(id));
-        
-        if (hasBooks) {
-            throw new InvalidInputException("Cannot delete author with existing books.");
-        }
-        
-        // Remove the author
-        authors.remove(id);
+        commit(seq[0]);
     }
     
     /**
@@ -349,6 +1055,28 @@ public class DataService {
         }
     }
     
+    /**
+     * Add an author to the full-text indexes
+     * Called while the author's entry is locked in the store
+     * 
+     * @param author The author to index
+     */
+    private void indexAuthor(Author author) {
+        authorNames.add(author.getId(), author.getName());
+        authorBiographies.add(author.getId(), author.getBiography());
+    }
+    
+    /**
+     * Remove an author from the full-text indexes
+     * Called while the author's entry is locked in the store
+     * 
+     * @param author The author to remove
+     */
+    private void unindexAuthor(Author author) {
+        authorNames.remove(author.getId(), author.getName());
+        authorBiographies.remove(author.getId(), author.getBiography());
+    }
+    
     // Customer-related methods
     
     /**
@@ -362,26 +1090,28 @@ public class DataService {
         // Validate customer
         validateCustomer(customer);
         
-        // Check if email is already in use
-        boolean emailExists = customers.values().stream()
-                .anyMatch(c -> c.getEmail().equals(customer.getEmail()));
+        // Generate ID for new customer
+        customer.setId(customerIdCounter.getAndIncrement());
         
-        if (emailExists) {
+        // Claim the email atomically, failing if it is already in use
+        if (!customersByEmail.claim(normalizeEmail(customer.getEmail()), customer.getId())) {
             throw new InvalidInputException("Email address is already in use.");
         }
         
-        // Generate ID for new customer
-        customer.setId(customerIdCounter.getAndIncrement());
-        
         // Add to the collection
-        customers.put(customer.getId(), customer);
+        long[] seq = new long[1];
+        customers.compute(customer.getId(), (key, existing) -> {
+            seq[0] = journal(RecordType.PUT_CUSTOMER, out -> RecordCodec.writeCustomer(out, customer));
+            return customer;
+        });
         
         // Create empty cart for the customer
         carts.put(customer.getId(), new Cart(customer.getId()));
         
-        // Initialize empty order list for the customer
-        customerOrders.put(customer.getId(), new ArrayList<>());
+        // Initialize empty order map for the customer
+        customerOrders.put(customer.getId(), new ConcurrentSkipListMap<>());
         
+        commit(seq[0]);
         return customer;
     }
     
@@ -391,7 +1121,7 @@ public class DataService {
      * @return List of all customers
      */
     public List<Customer> getAllCustomers() {
-        return new ArrayList<>(customers.values());
+        return customers.snapshot();
     }
     
     /**
@@ -409,6 +1139,22 @@ public class DataService {
         return customer;
     }
     
+    /**
+     * Get a customer by email address
+     * Matching is case-insensitive and ignores surrounding whitespace
+     * 
+     * @param email The email address
+     * @return The customer
+     * @throws CustomerNotFoundException if no customer has the email
+     */
+    public Customer getCustomerByEmail(String email) {
+        Customer customer = customers.get(customersByEmail.get(normalizeEmail(email)));
+        if (customer == null) {
+            throw new CustomerNotFoundException("Customer with email " + email + " does not exist.");
+        }
+        return customer;
+    }
+    
     /**
      * Update an existing customer
      * 
@@ -420,25 +1166,36 @@ public class DataService {
      */
     public Customer updateCustomer(Long id, Customer customer) {
         // Check if customer exists
-        if (!customers.containsKey(id)) {
+        if (!customers.contains(id)) {
             throw new CustomerNotFoundException(id);
         }
         
         // Validate customer
         validateCustomer(customer);
         
-        // Check if email is already in use by another customer
-        boolean emailExists = customers.values().stream()
-                .anyMatch(c -> c.getEmail().equals(customer.getEmail()) && !c.getId().equals(id));
+        // Update the customer, failing if it was deleted concurrently
+        customer.setId(id);
+        long[] seq = new long[1];
+        Customer updated = customers.computeIfPresent(id, (key, existing) -> {
+            // Move the email index entry if the email changed
+            String oldEmail = normalizeEmail(existing.getEmail());
+            String newEmail = normalizeEmail(customer.getEmail());
+            if (!newEmail.equals(oldEmail)) {
+                // Check if email is already in use by another customer
+                if (!customersByEmail.claim(newEmail, id)) {
+                    throw new InvalidInputException("Email address is already in use by another customer.");
+                }
+                customersByEmail.release(oldEmail, id);
+            }
+            seq[0] = journal(RecordType.PUT_CUSTOMER, out -> RecordCodec.writeCustomer(out, customer));
+            return customer;
+        });
         
-        if (emailExists) {
-            throw new InvalidInputException("Email address is already in use by another customer.");
+        if (updated == null) {
+            throw new CustomerNotFoundException(id);
         }
         
-        // Update the customer
-        customer.setId(id);
-        customers.put(id, customer);
-        
+        commit(seq[0]);
         return customer;
     }
     
@@ -449,19 +1206,75 @@ public class DataService {
      * @throws CustomerNotFoundException if the customer doesn't exist
      */
     public void deleteCustomer(Long id) {
-        // Check if customer exists
-        if (!customers.containsKey(id)) {
-            throw new CustomerNotFoundException(id);
+        // Delete under the cart lock that cart and order operations take, so none of them can
+        // store or journal anything for the customer once the delete is journaled
+        Cart cart = getCart(id);
+        Customer[] removed = new Customer[1];
+        long[] seq = new long[1];
+        synchronized (cart) {
+            checkLiveCart(id, cart);
+            
+            // Remove the customer, failing if it doesn't exist
+            customers.computeIfPresent(id, (key, existing) -> {
+                removed[0] = existing;
+                seq[0] = journal(RecordType.DELETE_CUSTOMER, out -> RecordCodec.writeLong(out, key));
+                return null;
+            });
+            if (removed[0] == null) {
+                throw new CustomerNotFoundException(id);
+            }
+            
+            // Remove the customer's email, cart and orders
+            removeCustomerData(id, removed[0]);
         }
         
-        // Remove the customer
-        customers.remove(id);
-        
-        // Remove customer's cart
-        carts.remove(id);
+        commit(seq[0]);
+    }
+    
+    /**
+     * Check, holding a cart's lock, that it is still the cart of an existing customer
+     * A cart is removed under its lock when its customer is deleted; a cart
+     * getCart() created after that is dropped again here
+     * 
+     * @param customerId The customer ID
+     * @param cart The cart whose lock is held
+     * @throws CustomerNotFoundException if the customer was deleted
+     */
+    private void checkLiveCart(Long customerId, Cart cart) {
+        if (!customers.contains(customerId) || carts.get(customerId) != cart) {
+            carts.remove(customerId, cart);
+            throw new CustomerNotFoundException(customerId);
+        }
+    }
+    
+    /**
+     * Remove everything owned by a deleted customer
+     * 
+     * @param id The customer ID
+     * @param removed The removed customer
+     */
+    private void removeCustomerData(Long id, Customer removed) {
+        // Free the customer's email
+        customersByEmail.release(normalizeEmail(removed.getEmail()), id);
+        
+        // Remove customer's cart and return the stock it held
+        Cart cart = carts.remove(id);
+        if (cart != null) {
+            synchronized (cart) {
+                releaseHolds(id);
+            }
+        }
         
-        // Remove customer's orders
-        customerOrders.remove(id);
+        // Remove customer's orders, including their entries in the order ID index
+        ConcurrentNavigableMap<Long, Order> removedOrders = customerOrders.remove(id);
+        if (removedOrders != null) {
+            for (Long orderId : removedOrders.keySet()) {
+                Order order = orders.remove(orderId);
+                if (order != null) {
+                    ordersByDate.remove(orderDateKey(order), orderId);
+                }
+            }
+        }
     }
     
     /**
@@ -484,6 +1297,16 @@ public class DataService {
         }
     }
     
+    /**
+     * Normalize an email address for the unique email index
+     * 
+     * @param email The email address
+     * @return The trimmed, lower-cased email, or null
+     */
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+    
     // Cart-related methods
     
     /**
@@ -496,19 +1319,12 @@ public class DataService {
      */
     public Cart getCart(Long customerId) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
-        // Get cart
-        Cart cart = carts.get(customerId);
-        if (cart == null) {
-            // Create cart if it doesn't exist
-            cart = new Cart(customerId);
-            carts.put(customerId, cart);
-        }
-        
-        return cart;
+        // Get cart, creating it atomically if it doesn't exist
+        return carts.computeIfAbsent(customerId, Cart::new);
     }
     
     /**
@@ -523,15 +1339,15 @@ public class DataService {
      */
     public Cart addCartItem(Long customerId, CartItem cartItem) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
         // Check if book exists
         Book book = getBookById(cartItem.getBookId());
         
-        // Check stock availability
-        if (book.getStock() < cartItem.getQuantity()) {
+        // Check stock availability; with reservations the hold below takes the stock instead
+        if (holdExpiry == null && book.getStock() < cartItem.getQuantity()) {
             throw new OutOfStockException(book.getId(), cartItem.getQuantity(), book.getStock());
         }
         
@@ -539,8 +1355,17 @@ public class DataService {
         Cart cart = getCart(customerId);
         
         // Add item to cart
-        cart.addItem(cartItem);
+        long seq;
+        synchronized (cart) {
+            checkLiveCart(customerId, cart);
+            if (holdExpiry != null) {
+                holdStock(customerId, book.getId(), quantityInCart(cart, book.getId()) + cartItem.getQuantity());
+            }
+            cart.addItem(cartItem);
+            seq = journalCart(cart);
+        }
         
+        commit(seq);
         return cart;
     }
     
@@ -558,7 +1383,7 @@ public class DataService {
      */
     public Cart updateCartItem(Long customerId, Long bookId, int quantity) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
@@ -570,25 +1395,35 @@ public class DataService {
             throw new InvalidInputException("Quantity must be greater than zero.");
         }
         
-        // Check stock availability
-        if (book.getStock() < quantity) {
+        // Check stock availability; with reservations the hold below takes the stock instead
+        if (holdExpiry == null && book.getStock() < quantity) {
             throw new OutOfStockException(book.getId(), quantity, book.getStock());
         }
         
         // Get cart
         Cart cart = getCart(customerId);
         
-        // Check if item exists in cart
-        boolean itemExists = cart.getItems().stream()
-                .anyMatch(item -> item.getBookId().equals(bookId));
-        
-        if (!itemExists) {
-            throw new InvalidInputException("Book with ID " + bookId + " not found in cart.");
+        long seq;
+        synchronized (cart) {
+            checkLiveCart(customerId, cart);
+            
+            // Check if item exists in cart
+            boolean itemExists = cart.getItems().stream()
+                    .anyMatch(item -> item.getBookId().equals(bookId));
+            
+            if (!itemExists) {
+                throw new InvalidInputException("Book with ID " + bookId + " not found in cart.");
+            }
+            
+            // Resize the item's hold, then update item in cart
+            if (holdExpiry != null) {
+                holdStock(customerId, bookId, quantity);
+            }
+            cart.updateItem(bookId, quantity);
+            seq = journalCart(cart);
         }
         
-        // Update item in cart
-        cart.updateItem(bookId, quantity);
-        
+        commit(seq);
         return cart;
     }
     
@@ -602,7 +1437,7 @@ public class DataService {
      */
     public Cart removeCartItem(Long customerId, Long bookId) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
@@ -610,8 +1445,15 @@ public class DataService {
         Cart cart = getCart(customerId);
         
         // Remove item from cart
-        cart.removeItem(bookId);
+        long seq;
+        synchronized (cart) {
+            checkLiveCart(customerId, cart);
+            releaseHold(customerId, bookId);
+            cart.removeItem(bookId);
+            seq = journalCart(cart);
+        }
         
+        commit(seq);
         return cart;
     }
     
@@ -627,66 +1469,368 @@ public class DataService {
      * @throws OutOfStockException if any book is out of stock
      */
     public Order createOrder(Long customerId) {
+        long[] seq = new long[1];
+        Order order = placeOrder(customerId, seq);
+        commit(seq[0]);
+        return order;
+    }
+    
+    /**
+     * Create an order from a customer's cart, asynchronously
+     * With the order pipeline enabled the checkout is queued for the single
+     * order writer; otherwise it runs as an update on the ServiceExecutor, so
+     * the journal sync doesn't hold the request thread
+     * 
+     * @param customerId The customer ID
+     * @return Future completed with the created order, or with the exception
+     *         createOrder would have thrown
+     */
+    public CompletableFuture<Order> submitOrder(Long customerId) {
+        if (orderPipeline != null) {
+            return orderPipeline.submit(customerId);
+        }
+        return ServiceExecutor.supplyUpdate(() -> createOrder(customerId));
+    }
+    
+    /**
+     * Place an order from a customer's cart without waiting for it to be durable
+     * 
+     * @param customerId The customer ID
+     * @param seq Receives the journal sequence number to commit
+     * @return The created order
+     */
+    private Order placeOrder(Long customerId, long[] seq) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
         // Get cart
         Cart cart = getCart(customerId);
         
-        // Check if cart is empty
-        if (cart.getItems().isEmpty()) {
-            throw new InvalidInputException("Cannot create an order with an empty cart.");
+        // Checkout is serialized per customer so the cart can't change underneath it
+        Order order;
+        synchronized (cart) {
+            checkLiveCart(customerId, cart);
+            
+            // Check if cart is empty
+            if (cart.getItems().isEmpty()) {
+                throw new InvalidInputException("Cannot create an order with an empty cart.");
+            }
+            
+            // Stock is taken and the order journaled without a book update in between, so the
+            // journal never has an absolute PUT_BOOK stock between a decrement and its record
+            stockLock.readLock().lock();
+            try {
+                // Reserve stock for every item up front, converting the cart's holds if reservations are on;
+                // nothing is taken unless all items succeed
+                List<CartItem> cartItems = new ArrayList<>(cart.getItems());
+                Book[] reservedBooks = holdExpiry != null ? convertHolds(customerId, cartItems) : reserveStock(cartItems);
+                
+                // Create order items and calculate total
+                List<OrderItem> orderItems = new ArrayList<>();
+                double totalAmount = 0;
+                
+                for (int i = 0; i < cartItems.size(); i++) {
+                    CartItem cartItem = cartItems.get(i);
+                    Book book = reservedBooks[i];
+                    
+                    // Create order item
+                    OrderItem orderItem = new OrderItem(
+                            book.getId(),
+                            book.getTitle(),
+                            cartItem.getQuantity(),
+                            book.getPrice()
+                    );
+                    
+                    // Add to order items
+                    orderItems.add(orderItem);
+                    
+                    // Add to total
+                    totalAmount += orderItem.getTotalPrice();
+                }
+                
+                // Create order
+                order = new Order(
+                        orderIdCounter.getAndIncrement(),
+                        customerId,
+                        orderItems,
+                        totalAmount
+                );
+                
+                // Add to customer's orders and the order indexes
+                storeOrder(order);
+                
+                // Clear customer's cart
+                cart.clear();
+                
+                // Journal the order; replay re-applies its stock decrements and clears the cart
+                Order created = order;
+                seq[0] = journal(RecordType.CREATE_ORDER, out -> RecordCodec.writeOrder(out, created));
+            } finally {
+                stockLock.readLock().unlock();
+            }
         }
         
-        // Create order items and calculate total
-        List<OrderItem> orderItems = new ArrayList<>();
-        double totalAmount = 0;
-        
-        for (CartItem cartItem : cart.getItems()) {
-            // Get book
-            Book book = getBookById(cartItem.getBookId());
+        return order;
+    }
+    
+    /**
+     * Decrement stock for all cart items as a single all-or-nothing step
+     * If any item can't be reserved, stock already taken for earlier items is returned
+     * 
+     * @param cartItems The items to reserve
+     * @return The book instances stock was taken from, in cart item order
+     * @throws BookNotFoundException if a book doesn't exist
+     * @throws OutOfStockException if any book has insufficient stock
+     */
+    private Book[] reserveStock(List<CartItem> cartItems) {
+        Book[] reservedBooks = new Book[cartItems.size()];
+        int reserved = 0;
+        try {
+            for (CartItem cartItem : cartItems) {
+                reservedBooks[reserved] = decrementStock(cartItem.getBookId(), cartItem.getQuantity());
+                reserved++;
+            }
+            return reservedBooks;
+        } catch (RuntimeException e) {
+            // Roll back the items reserved so far
+            for (int i = 0; i < reserved; i++) {
+                reservedBooks[i].addStock(cartItems.get(i).getQuantity());
+                stockChanged(reservedBooks[i]);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Decrement a book's stock using compare-and-set with retry
+     * Checkouts on different books never contend; checkouts on the same book
+     * only retry when another one changed the stock in between
+     * 
+     * @param bookId The book ID
+     * @param quantity The quantity to take
+     * @return The book instance the stock was taken from
+     * @throws BookNotFoundException if the book doesn't exist
+     * @throws OutOfStockException if the book has insufficient stock
+     */
+    private Book decrementStock(Long bookId, int quantity) {
+        while (true) {
+            Book book = getBookById(bookId);
+            int stock = book.getStock();
             
             // Check stock availability
-            if (book.getStock() < cartItem.getQuantity()) {
-                throw new OutOfStockException(book.getId(), cartItem.getQuantity(), book.getStock());
+            if (stock < quantity) {
+                throw new OutOfStockException(bookId, quantity, stock);
             }
             
-            // Create order item
-            OrderItem orderItem = new OrderItem(
-                    book.getId(),
-                    book.getTitle(),
-                    cartItem.getQuantity(),
-                    book.getPrice()
-            );
-            
-            // Add to order items
-            orderItems.add(orderItem);
+            // Another checkout changed the stock first, try again
+            if (!book.compareAndSetStock(stock, stock - quantity)) {
+                continue;
+            }
             
-            // Add to total
-            totalAmount += orderItem.getTotalPrice();
+            // The book was replaced by a concurrent update, give the stock back and retry on the new instance
+            if (books.get(bookId) != book) {
+                book.addStock(quantity);
+                continue;
+            }
             
-            // Update book stock
-            book.setStock(book.getStock() - cartItem.getQuantity());
+            stockChanged(book);
+            return book;
+        }
+    }
+    
+    /**
+     * Take stock for checkout from the customer's holds
+     * Items fully covered by a hold on the current book instance use the held
+     * stock without looking at live stock. Anything else (no hold, an expired or
+     * stale hold) is reserved from live stock, all or nothing. Once that succeeds
+     * every hold of the customer is consumed, and any surplus is returned
+     * Must be called under the cart lock
+     * 
+     * @param customerId The customer ID
+     * @param cartItems The items to reserve
+     * @return The book instances stock was taken from, in cart item order
+     * @throws BookNotFoundException if an uncovered book doesn't exist
+     * @throws OutOfStockException if an uncovered book has insufficient stock
+     */
+    private Book[] convertHolds(Long customerId, List<CartItem> cartItems) {
+        Map<Long, StockHold> holds = stockHolds.getOrDefault(customerId, Collections.emptyMap());
+        Book[] reservedBooks = new Book[cartItems.size()];
+        
+        // Split the items into those covered by a live hold and the rest
+        List<CartItem> uncovered = new ArrayList<>();
+        for (int i = 0; i < cartItems.size(); i++) {
+            CartItem cartItem = cartItems.get(i);
+            StockHold hold = holds.get(cartItem.getBookId());
+            if (hold != null && hold.quantity >= cartItem.getQuantity() && books.get(hold.bookId) == hold.book) {
+                reservedBooks[i] = hold.book;
+            } else {
+                uncovered.add(cartItem);
+            }
         }
         
-        // Create order
-        Order order = new Order(
-                orderIdCounter.getAndIncrement(),
-                customerId,
-                orderItems,
-                totalAmount
-        );
+        // Reserve the uncovered items from live stock
+        Book[] uncoveredBooks = reserveStock(uncovered);
+        for (int i = 0, j = 0; i < cartItems.size(); i++) {
+            if (reservedBooks[i] == null) {
+                reservedBooks[i] = uncoveredBooks[j++];
+            }
+        }
         
-        // Add to customer's orders
-        List<Order> orders = customerOrders.get(customerId);
-        orders.add(order);
+        // Consume the holds; whatever an item didn't use goes back to the instance it came from
+        Map<Long, StockHold> consumed = stockHolds.remove(customerId);
+        if (consumed != null) {
+            for (int i = 0; i < cartItems.size(); i++) {
+                CartItem cartItem = cartItems.get(i);
+                StockHold hold = consumed.remove(cartItem.getBookId());
+                if (hold != null) {
+                    hold.timeout.cancel();
+                    int used = reservedBooks[i] == hold.book ? cartItem.getQuantity() : 0;
+                    hold.book.addStock(hold.quantity - used);
+                    stockChanged(hold.book);
+                }
+            }
+            returnHolds(consumed.values());
+        }
         
-        // Clear customer's cart
-        cart.getItems().clear();
+        return reservedBooks;
+    }
+    
+    /**
+     * Set the stock held for a cart item to a target quantity
+     * Only the difference from the current hold is taken or returned. A hold on
+     * a book instance that has since been replaced doesn't count: it is returned
+     * and the full quantity is taken from the current instance
+     * Must be called under the cart lock, before the cart changes
+     * 
+     * @param customerId The customer ID
+     * @param bookId The book ID
+     * @param target The quantity to hold
+     * @throws BookNotFoundException if the book doesn't exist
+     * @throws OutOfStockException if the book has insufficient stock for the increase
+     */
+    private void holdStock(Long customerId, Long bookId, int target) {
+        Map<Long, StockHold> holds = stockHolds.computeIfAbsent(customerId, id -> new HashMap<>());
+        StockHold existing = holds.get(bookId);
+        
+        // Take or return the difference on the current book instance
+        Book book;
+        while (true) {
+            book = getBookById(bookId);
+            int held = existing != null && existing.book == book ? existing.quantity : 0;
+            int delta = target - held;
+            if (delta <= 0) {
+                book.addStock(-delta);
+                stockChanged(book);
+                break;
+            }
+            Book taken = decrementStock(bookId, delta);
+            if (taken == book) {
+                break;
+            }
+            
+            // The book was replaced in between, so the held quantity no longer applies
+            taken.addStock(delta);
+            stockChanged(taken);
+        }
         
-        return order;
+        // Replace the old hold, returning it if it was on a stale instance
+        if (existing != null) {
+            existing.timeout.cancel();
+            if (existing.book != book) {
+                existing.book.addStock(existing.quantity);
+                stockChanged(existing.book);
+            }
+        }
+        StockHold hold = new StockHold(customerId, bookId, book, target);
+        hold.timeout = holdExpiry.schedule(hold, holdTtlMillis);
+        holds.put(bookId, hold);
+    }
+    
+    /**
+     * Return the stock held for one cart item
+     * Must be called under the cart lock
+     * 
+     * @param customerId The customer ID
+     * @param bookId The book ID
+     */
+    private void releaseHold(Long customerId, Long bookId) {
+        Map<Long, StockHold> holds = stockHolds.get(customerId);
+        StockHold hold = holds == null ? null : holds.remove(bookId);
+        if (hold != null) {
+            returnHolds(Collections.singletonList(hold));
+        }
+    }
+    
+    /**
+     * Return all stock held for a customer's cart
+     * Must be called under the cart lock
+     * 
+     * @param customerId The customer ID
+     */
+    private void releaseHolds(Long customerId) {
+        Map<Long, StockHold> holds = stockHolds.remove(customerId);
+        if (holds != null) {
+            returnHolds(holds.values());
+        }
+    }
+    
+    // Cancel holds and give their stock back to the instances it was taken from
+    private void returnHolds(Collection<StockHold> holds) {
+        for (StockHold hold : holds) {
+            hold.timeout.cancel();
+            hold.book.addStock(hold.quantity);
+            stockChanged(hold.book);
+        }
+    }
+    
+    /**
+     * Release the holds whose time ran out
+     * Called by the timer wheel with every hold expiring on a tick. A hold that
+     * was replaced or consumed after its timeout fired is left alone. A hold
+     * whose cart is gone (one taken by a request that raced the customer's
+     * removal) is still released, so its stock isn't lost
+     * 
+     * @param expired The expired holds
+     */
+    private void expireHolds(List<StockHold> expired) {
+        for (StockHold hold : expired) {
+            Cart cart = carts.get(hold.customerId);
+            if (cart != null) {
+                synchronized (cart) {
+                    Map<Long, StockHold> holds = stockHolds.get(hold.customerId);
+                    if (holds != null && holds.remove(hold.bookId, hold)) {
+                        returnExpired(hold);
+                    }
+                }
+                continue;
+            }
+            
+            // No cart lock to take, so remove it in the customer's atomic section
+            boolean[] removed = new boolean[1];
+            stockHolds.computeIfPresent(hold.customerId, (id, holds) -> {
+                removed[0] = holds.remove(hold.bookId, hold);
+                return holds.isEmpty() ? null : holds;
+            });
+            if (removed[0]) {
+                returnExpired(hold);
+            }
+        }
+    }
+    
+    // Give an expired hold's stock back to the instance it was taken from
+    private void returnExpired(StockHold hold) {
+        hold.book.addStock(hold.quantity);
+        stockChanged(hold.book);
+    }
+    
+    // Quantity of a book already in a cart
+    private static int quantityInCart(Cart cart, Long bookId) {
+        return cart.getItems().stream()
+                .filter(item -> item.getBookId().equals(bookId))
+                .mapToInt(CartItem::getQuantity)
+                .sum();
     }
     
     /**
@@ -698,19 +1842,70 @@ public class DataService {
      */
     public List<Order> getCustomerOrders(Long customerId) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
-        // Get customer's orders
-        List<Order> orders = customerOrders.get(customerId);
-        if (orders == null) {
-            // Initialize empty order list
-            orders = new ArrayList<>();
-            customerOrders.put(customerId, orders);
+        // Get customer's orders in order ID order; a read never creates the map, which a delete may have just removed
+        ConcurrentNavigableMap<Long, Order> placed = customerOrders.get(customerId);
+        return placed == null ? new ArrayList<>() : new ArrayList<>(placed.values());
+    }
+    
+    /**
+     * Add a new order to its customer's orders and to the order indexes
+     * 
+     * @param order The order
+     */
+    private void storeOrder(Order order) {
+        getCustomerOrderMap(order.getCustomerId()).put(order.getId(), order);
+        orders.put(order.getId(), order);
+        ordersByDate.add(orderDateKey(order), order.getId());
+    }
+    
+    /**
+     * Get the key orders are sorted by in the order date index
+     * 
+     * @param order The order
+     * @return The order time in milliseconds, or null if it has no date
+     */
+    private static Long orderDateKey(Order order) {
+        return order.getOrderDate() == null ? null : order.getOrderDate().getTime();
+    }
+    
+    /**
+     * Get the orders placed in a time range, in order date order, for export
+     * Orders never change once placed, so each row is exact; orders placed after
+     * the call (by ID) are left out, so a long-running export has a fixed end.
+     * The cutoff is read from the order ID counter without waiting for
+     * checkouts, so an order still being placed during the call may be left out
+     * as well; nothing is locked or copied
+     * 
+     * @param from The earliest order time, inclusive, or null
+     * @param to The latest order time, exclusive, or null
+     * @return Lazy stream of orders
+     * @throws InvalidInputException if the range is inverted
+     */
+    public Stream<Order> exportOrders(Date from, Date to) {
+        if (from != null && to != null && from.after(to)) {
+            throw new InvalidInputException("Start of the range cannot be after its end.");
         }
-        
-        return orders;
+        long cutoff = orderIdCounter.get();
+        Long fromKey = from == null ? null : from.getTime();
+        Long toKey = to == null ? null : to.getTime() - 1;
+        return ordersByDate.range(fromKey, toKey, null, null).stream()
+                .filter(entry -> entry.getId() < cutoff)
+                .map(entry -> orders.get(entry.getId()))
+                .filter(Objects::nonNull);
+    }
+    
+    /**
+     * Get the order map for a customer, keyed by order ID
+     * 
+     * @param customerId The customer ID
+     * @return The customer's order map, initialized atomically if missing
+     */
+    private ConcurrentNavigableMap<Long, Order> getCustomerOrderMap(Long customerId) {
+        return customerOrders.computeIfAbsent(customerId, key -> new ConcurrentSkipListMap<>());
     }
     
     /**
@@ -724,21 +1919,403 @@ public class DataService {
      */
     public Order getCustomerOrder(Long customerId, Long orderId) {
         // Check if customer exists
-        if (!customers.containsKey(customerId)) {
+        if (!customers.contains(customerId)) {
             throw new CustomerNotFoundException(customerId);
         }
         
-        // Get customer's orders
-        List<Order> orders = getCustomerOrders(customerId);
+        // Find order in the customer's order map
+        ConcurrentNavigableMap<Long, Order> placed = customerOrders.get(customerId);
+        Order order = orderId == null || placed == null ? null : placed.get(orderId);
+        if (order == null) {
+            throw new OrderNotFoundException(orderId);
+        }
+        return order;
+    }
+    
+    /**
+     * Get an order by ID, regardless of which customer placed it
+     * 
+     * @param orderId The order ID
+     * @return The order
+     * @throws OrderNotFoundException if the order doesn't exist
+     */
+    public Order getOrderById(Long orderId) {
+        Order order = orders.get(orderId);
+        if (order == null) {
+            throw new OrderNotFoundException(orderId);
+        }
+        return order;
+    }
+    
+    // Persistence
+    
+    /**
+     * Open the journal if a data directory is configured
+     * 
+     * @return The journal, or null when persistence is disabled
+     */
+    private static Journal openJournal() {
+        String dataDir = Settings.getString(DATA_DIR_SETTING, null);
+        if (dataDir == null) {
+            return null;
+        }
         
-        // Find order
-        for (Order order : orders) {
-            if (order.getId().equals(orderId)) {
-                return order;
+        Journal.SyncPolicy policy = Settings.getEnum(JOURNAL_SYNC_SETTING,
+                Journal.SyncPolicy.class, Journal.SyncPolicy.GROUP);
+        long intervalMillis = Settings.getLong(JOURNAL_INTERVAL_SETTING, 5);
+        Path directory = Paths.get(dataDir);
+        try {
+            Journal opened = Journal.open(directory, policy, intervalMillis);
+            
+            // Flush anything still buffered when the JVM shuts down
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    // Nothing left to do during shutdown
+                }
+            }, "journal-shutdown"));
+            return opened;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal in " + directory, e);
+        }
+    }
+    
+    /**
+     * Rebuild the in-memory state from the latest snapshot and the journal written after it
+     * 
+     * @return true if any state was restored
+     */
+    private boolean recover() {
+        Path directory = journal.getDirectory();
+        try {
+            // Load the latest snapshot, then replay only the segments it doesn't cover
+            long fromSegment = 1;
+            Path snapshot = Snapshot.latest(directory);
+            if (snapshot != null) {
+                fromSegment = loadSnapshot(snapshot).getJournalSegment() + 1;
             }
+            long replayed = journal.replay(fromSegment, this::applyJournalRecord);
+            return snapshot != null || replayed > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover data from " + directory, e);
         }
-        
-        // Order not found
-        throw new OrderNotFoundException(orderId);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Schedule periodic checkpoints on a background thread
+     */
+    private void scheduleCheckpoints() {
+        long intervalSeconds = Settings.getLong(SNAPSHOT_INTERVAL_SETTING, 300);
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-checkpointer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (RuntimeException e) {
+                // Keep the schedule alive; the journal still holds everything
+                LOGGER.log(Level.WARNING, "Snapshot checkpoint failed.", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Fold the journal written so far into a new snapshot
+     * 
+     * The snapshot is built from the log rather than from the live maps: the
+     * active journal segment is closed, and a private shadow copy loads the
+     * previous snapshot and replays the closed segments. Writers never wait on
+     * it (they only keep appending to the new segment) and the snapshot is
+     * exactly the state after the last closed record, with no half-finished
+     * checkout in it. The cost is a second copy of the data in memory while
+     * the checkpoint runs.
+     * 
+     * @return true if a snapshot was written, false if nothing was journaled since the last one
+     * @throws UncheckedIOException if the snapshot can't be written
+     */
+    public boolean checkpoint() {
+        if (journal == null) {
+            return false;
+        }
+        synchronized (checkpointLock) {
+            Path directory = journal.getDirectory();
+            try {
+                long closed = journal.rotate();
+                if (closed < 0) {
+                    return false;
+                }
+                
+                // Rebuild the state as of the end of the closed segment in a shadow copy
+                DataService shadow = new DataService(null, false);
+                long fromSegment = 1;
+                Path previous = Snapshot.latest(directory);
+                if (previous != null) {
+                    fromSegment = shadow.loadSnapshot(previous).getJournalSegment() + 1;
+                }
+                journal.replayClosed(fromSegment, closed, shadow::applyJournalRecord);
+                
+                // Publish the new snapshot, then drop what it covers
+                shadow.writeSnapshot(directory, closed);
+                Snapshot.deleteOlderThan(directory, closed);
+                journal.deleteThrough(closed);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write snapshot in " + directory, e);
+            }
+        }
+    }
+    
+    /**
+     * Write the whole state to a snapshot file
+     * Only called on a shadow copy that nothing else is modifying
+     * 
+     * @param directory The data directory
+     * @param journalSegment The last journal segment the state includes
+     * @throws IOException if the snapshot can't be written
+     */
+    private void writeSnapshot(Path directory, long journalSegment) throws IOException {
+        long[] counters = {
+                bookIdCounter.get(), authorIdCounter.get(), customerIdCounter.get(), orderIdCounter.get()
+        };
+        try (Snapshot.Writer writer = Snapshot.create(directory, journalSegment, counters)) {
+            writer.writeSection(Snapshot.Section.AUTHORS, authors.values(), RecordCodec::writeAuthor);
+            writer.writeSection(Snapshot.Section.BOOKS, books.values(), RecordCodec::writeBook);
+            writer.writeSection(Snapshot.Section.CUSTOMERS, customers.values(), RecordCodec::writeCustomer);
+            writer.writeSection(Snapshot.Section.CARTS, carts.values(), RecordCodec::writeCart);
+            writer.writeSection(Snapshot.Section.ORDERS, orders.values(), RecordCodec::writeOrder);
+            writer.commit();
+        }
+    }
+    
+    /**
+     * Load a snapshot into this (empty) service
+     * 
+     * @param file The snapshot file
+     * @return The snapshot header
+     * @throws IOException if the snapshot can't be read
+     */
+    private Snapshot.Header loadSnapshot(Path file) throws IOException {
+        Snapshot.Header header = Snapshot.load(file, this::applySnapshotRecord);
+        long[] counters = header.getCounters();
+        bookIdCounter.accumulateAndGet(counters[0], Math::max);
+        authorIdCounter.accumulateAndGet(counters[1], Math::max);
+        customerIdCounter.accumulateAndGet(counters[2], Math::max);
+        orderIdCounter.accumulateAndGet(counters[3], Math::max);
+        return header;
+    }
+    
+    /**
+     * Apply one snapshot record to the in-memory state
+     * Called concurrently for records of different chunks; snapshot records
+     * are final state, so unlike journal records they never adjust stock
+     * 
+     * @param section The snapshot section
+     * @param in The record
+     * @throws IOException if the record can't be decoded
+     */
+    private void applySnapshotRecord(Snapshot.Section section, DataInput in) throws IOException {
+        switch (section) {
+            case AUTHORS: {
+                Author author = RecordCodec.readAuthor(in);
+                authors.compute(author.getId(), (key, previous) -> {
+                    indexAuthor(author);
+                    return author;
+                });
+                break;
+            }
+            case BOOKS: {
+                Book book = RecordCodec.readBook(in);
+                books.compute(book.getId(), (key, previous) -> {
+                    indexBook(book);
+                    return book;
+                });
+                break;
+            }
+            case CUSTOMERS: {
+                Customer customer = RecordCodec.readCustomer(in);
+                customers.put(customer.getId(), customer);
+                customersByEmail.claim(normalizeEmail(customer.getEmail()), customer.getId());
+                getCustomerOrderMap(customer.getId());
+                break;
+            }
+            case CARTS: {
+                Cart cart = RecordCodec.readCart(in);
+                carts.put(cart.getCustomerId(), cart);
+                break;
+            }
+            case ORDERS: {
+                Order order = RecordCodec.readOrder(in);
+                storeOrder(order);
+                break;
+            }
+            default:
+                throw new IOException("Unsupported snapshot section " + section);
+        }
+    }
+    
+    /**
+     * Write the sample data to an empty journal so a restart replays it
+     */
+    private void journalSampleData() {
+        if (journal == null) {
+            return;
+        }
+        for (Author author : authors.values()) {
+            journal(RecordType.PUT_AUTHOR, out -> RecordCodec.writeAuthor(out, author));
+        }
+        for (Book book : books.values()) {
+            journal(RecordType.PUT_BOOK, out -> RecordCodec.writeBook(out, book));
+        }
+        for (Customer customer : customers.values()) {
+            journal(RecordType.PUT_CUSTOMER, out -> RecordCodec.writeCustomer(out, customer));
+        }
+        journal.flushAll();
+    }
+    
+    /**
+     * Append a record to the journal
+     * 
+     * @param type The record type
+     * @param writer Encodes the record payload
+     * @return The record's sequence number, or 0 when persistence is disabled
+     */
+    private long journal(RecordType type, Journal.RecordWriter writer) {
+        return journal == null ? 0 : journal.append(type, writer);
+    }
+    
+    /**
+     * Append a cart's full contents to the journal
+     * Called while the cart is locked
+     * 
+     * @param cart The cart
+     * @return The record's sequence number
+     */
+    private long journalCart(Cart cart) {
+        return journal(RecordType.PUT_CART, out -> RecordCodec.writeCart(out, cart));
+    }
+    
+    /**
+     * Wait until a journaled mutation is durable
+     * Called after all entity locks are released
+     * 
+     * @param seq The sequence number returned by journal()
+     */
+    private void commit(long seq) {
+        if (journal != null && seq > 0) {
+            journal.sync(seq);
+        }
+    }
+    
+    /**
+     * Apply one replayed journal record to the in-memory state
+     * 
+     * @param type The record type
+     * @param in The record payload
+     * @throws IOException if the payload can't be decoded
+     */
+    private void applyJournalRecord(RecordType type, DataInput in) throws IOException {
+        switch (type) {
+            case PUT_BOOK: {
+                Book book = RecordCodec.readBook(in);
+                books.compute(book.getId(), (key, previous) -> {
+                    if (previous != null) {
+                        reindexBook(previous, book);
+                    } else {
+                        indexBook(book);
+                    }
+                    return book;
+                });
+                advanceCounter(bookIdCounter, book.getId());
+                break;
+            }
+            case DELETE_BOOK: {
+                Long id = RecordCodec.readLong(in);
+                books.computeIfPresent(id, (key, previous) -> {
+                    unindexBook(previous);
+                    return null;
+                });
+                break;
+            }
+            case PUT_AUTHOR: {
+                Author author = RecordCodec.readAuthor(in);
+                authors.compute(author.getId(), (key, previous) -> {
+                    if (previous != null) {
+                        unindexAuthor(previous);
+                    }
+                    indexAuthor(author);
+                    return author;
+                });
+                advanceCounter(authorIdCounter, author.getId());
+                break;
+            }
+            case DELETE_AUTHOR:
+                authors.computeIfPresent(RecordCodec.readLong(in), (key, previous) -> {
+                    unindexAuthor(previous);
+                    return null;
+                });
+                break;
+            case PUT_CUSTOMER: {
+                Customer customer = RecordCodec.readCustomer(in);
+                Customer previous = customers.put(customer.getId(), customer);
+                if (previous != null) {
+                    customersByEmail.release(normalizeEmail(previous.getEmail()), previous.getId());
+                }
+                customersByEmail.claim(normalizeEmail(customer.getEmail()), customer.getId());
+                carts.computeIfAbsent(customer.getId(), Cart::new);
+                getCustomerOrderMap(customer.getId());
+                advanceCounter(customerIdCounter, customer.getId());
+                break;
+            }
+            case DELETE_CUSTOMER: {
+                Long id = RecordCodec.readLong(in);
+                Customer removed = customers.remove(id);
+                if (removed != null) {
+                    removeCustomerData(id, removed);
+                }
+                break;
+            }
+            case PUT_CART: {
+                Cart cart = RecordCodec.readCart(in);
+                carts.put(cart.getCustomerId(), cart);
+                break;
+            }
+            case CREATE_ORDER: {
+                Order order = RecordCodec.readOrder(in);
+                for (OrderItem item : order.getItems()) {
+                    Book book = books.get(item.getBookId());
+                    if (book != null) {
+                        book.addStock(-item.getQuantity());
+                    }
+                }
+                storeOrder(order);
+                Cart cart = carts.get(order.getCustomerId());
+                if (cart != null) {
+                    cart.clear();
+                }
+                advanceCounter(orderIdCounter, order.getId());
+                break;
+            }
+            default:
+                throw new IOException("Unsupported journal record type " + type);
+        }
+    }
+    
+    /**
+     * Move an ID counter past an ID that is already in use
+     * 
+     * @param counter The ID counter
+     * @param id The ID in use
+     */
+    private static void advanceCounter(AtomicLong counter, Long id) {
+        if (id != null) {
+            counter.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+}
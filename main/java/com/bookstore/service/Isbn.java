@@ -0,0 +1,76 @@
+package com.bookstore.service;
+
+/**
+ * ISBN normalization
+ * Every valid ISBN-10 or ISBN-13 is reduced to its 13 digit form without
+ * separators, so "0-7475-3269-9" and "978-0747532699" index as the same book
+ */
+public final class Isbn {
+
+    private Isbn() {
+    }
+
+    /**
+     * Normalize an ISBN to 13 digits
+     * Hyphens and spaces are ignored; ISBN-10 is converted to ISBN-13 with the 978 prefix
+     *
+     * @param isbn The ISBN as entered
+     * @return The 13 digit ISBN, or null if the input isn't a valid ISBN-10 or ISBN-13
+     */
+    public static String normalize(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+
+        // Strip separators
+        StringBuilder digits = new StringBuilder(13);
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (c == 'x') {
+                c = 'X';
+            }
+            if (digits.length() == 13 || !(Character.isDigit(c) || c == 'X')) {
+                return null;
+            }
+            digits.append(c);
+        }
+
+        if (digits.length() == 10 && isValidIsbn10(digits)) {
+            // Re-prefix and recompute the check digit
+            digits.setLength(9);
+            digits.insert(0, "978");
+            digits.append(isbn13CheckDigit(digits));
+            return digits.toString();
+        }
+        if (digits.length() == 13 && digits.indexOf("X") < 0
+                && isbn13CheckDigit(digits) == digits.charAt(12)) {
+            return digits.toString();
+        }
+        return null;
+    }
+
+    // Weighted sum 10..1 must be divisible by 11; only the last character may be X (10)
+    private static boolean isValidIsbn10(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = digits.charAt(i);
+            if (c == 'X' && i != 9) {
+                return false;
+            }
+            sum += (c == 'X' ? 10 : c - '0') * (10 - i);
+        }
+        return sum % 11 == 0;
+    }
+
+    // Check digit over the first 12 digits, weighted 1, 3, 1, 3, ...
+    private static char isbn13CheckDigit(CharSequence digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+}
@@ -0,0 +1,184 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Order;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
+
+/**
+ * Single-writer checkout pipeline
+ * Request threads put checkouts into a bounded ring buffer and get a future
+ * back. One writer thread drains the buffer in batches, places each order
+ * (stock, order ID, cart) without competing with other checkouts, then makes
+ * the whole batch durable with a single journal sync before completing the
+ * callers. A full buffer blocks submitters, which bounds the backlog. A
+ * failure, even an Error, only fails the checkouts it affects; if the writer
+ * thread stops anyway, queued and later checkouts are rejected instead of
+ * waiting forever
+ */
+class OrderPipeline {
+
+    /**
+     * Places one order and reports its journal sequence number
+     */
+    @FunctionalInterface
+    interface OrderPlacer {
+        Order place(Long customerId, long[] seq);
+    }
+
+    // One queued checkout
+    private static final class Request {
+        final Long customerId;
+        final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        Request(Long customerId) {
+            this.customerId = customerId;
+        }
+    }
+
+    private final BlockingQueue<Request> queue;
+    private final int maxBatch;
+    private final OrderPlacer placer;
+    private final LongConsumer committer;
+
+    // Callers are completed here, so response handling never runs on the writer thread
+    private final Executor completions = ForkJoinPool.commonPool();
+
+    // Set once the writer thread has stopped
+    private volatile boolean stopped;
+
+    /**
+     * Create the pipeline and start its writer thread
+     *
+     * @param capacity The ring buffer capacity
+     * @param maxBatch The most checkouts placed per journal sync
+     * @param placer Places one order, without waiting for durability
+     * @param committer Waits until a journal sequence number is durable
+     */
+    OrderPipeline(int capacity, int maxBatch, OrderPlacer placer, LongConsumer committer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.placer = placer;
+        this.committer = committer;
+
+        Thread writer = new Thread(this::run, "order-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue a checkout, waiting for space if the buffer is full
+     *
+     * @param customerId The customer ID
+     * @return Future completed with the order, or with the exception that rejected it;
+     *         a RejectedExecutionException if the writer has stopped
+     */
+    CompletableFuture<Order> submit(Long customerId) {
+        Request request = new Request(customerId);
+        if (stopped) {
+            request.result.completeExceptionally(stoppedException());
+            return request.result;
+        }
+        try {
+            queue.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.result.completeExceptionally(e);
+        }
+
+        // The writer stopped while this was queued, so nobody else will take it
+        if (stopped) {
+            rejectQueued();
+        }
+        return request.result;
+    }
+
+    // Writer loop: take a batch, place every order, sync once, complete the callers
+    private void run() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        Order[] placed = new Order[maxBatch];
+        long[] seq = new long[1];
+        try {
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, maxBatch - 1);
+                try {
+                    process(batch, placed, seq);
+                } catch (Throwable e) {
+                    // Whatever escaped fails the rest of the batch, not the writer
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).result.completeExceptionally(e);
+                        placed[i] = null;
+                    }
+                }
+                batch.clear();
+            }
+        } finally {
+            stopped = true;
+            rejectQueued();
+        }
+    }
+
+    // Place a batch of orders, sync once and complete the callers
+    private void process(List<Request> batch, Order[] placed, long[] seq) {
+        // Place the orders; failures are completed right away
+        long lastSeq = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                seq[0] = 0;
+                placed[i] = placer.place(batch.get(i).customerId, seq);
+                lastSeq = Math.max(lastSeq, seq[0]);
+            } catch (Throwable e) {
+                placed[i] = null;
+                complete(batch.get(i), null, e);
+            }
+        }
+
+        // One durability wait for the whole batch
+        Throwable commitFailure = null;
+        try {
+            committer.accept(lastSeq);
+        } catch (Throwable e) {
+            commitFailure = e;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (placed[i] != null) {
+                complete(batch.get(i), commitFailure == null ? placed[i] : null, commitFailure);
+                placed[i] = null;
+            }
+        }
+    }
+
+    private void complete(Request request, Order order, Throwable failure) {
+        completions.execute(() -> {
+            if (failure != null) {
+                request.result.completeExceptionally(failure);
+            } else {
+                request.result.complete(order);
+            }
+        });
+    }
+
+    // Fail every queued checkout once the writer has stopped
+    private void rejectQueued() {
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.result.completeExceptionally(stoppedException());
+        }
+    }
+
+    private static RejectedExecutionException stoppedException() {
+        return new RejectedExecutionException("The order writer has stopped.");
+    }
+}
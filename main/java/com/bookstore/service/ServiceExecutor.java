@@ -0,0 +1,166 @@
+package com.bookstore.service;
+
+import com.bookstore.config.Settings;
+import com.bookstore.exception.ServiceTimeoutException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor for the service-side work of asynchronous resource methods
+ * Resources hand their work over and return the stage, so a blocking wait
+ * holds a cheap thread here instead of one of the container's request
+ * threads. Reads that run past the timeout fail the stage with a
+ * ServiceTimeoutException and are interrupted; cancelling the stage also
+ * interrupts them. Updates are neither timed out nor interrupted: they may
+ * be writing the journal, where an interrupt closes its channel, and once
+ * applied they must be reported as done
+ *
+ * Configured by bookstore.async.executor: virtual (default; a virtual thread
+ * per task, falling back to pool on JVMs without virtual threads), pool (a
+ * fixed pool of bookstore.async.threads platform threads, default 64) or
+ * direct (run on the calling thread), and by bookstore.async.timeoutMillis
+ * (default 30000, 0 for none)
+ */
+public final class ServiceExecutor {
+    private static final String EXECUTOR_SETTING = "bookstore.async.executor";
+    private static final String THREADS_SETTING = "bookstore.async.threads";
+    private static final String TIMEOUT_SETTING = "bookstore.async.timeoutMillis";
+
+    private static final Logger LOGGER = Logger.getLogger(ServiceExecutor.class.getName());
+
+    /**
+     * Where the work runs
+     */
+    public enum Mode {
+        VIRTUAL,
+        POOL,
+        DIRECT
+    }
+
+    private static final long TIMEOUT_MILLIS = Math.max(0, Settings.getLong(TIMEOUT_SETTING, 30_000));
+
+    // Null in direct mode
+    private static final ExecutorService EXECUTOR = createExecutor(
+            Settings.getEnum(EXECUTOR_SETTING, Mode.class, Mode.VIRTUAL), Settings.getInt(THREADS_SETTING, 64));
+
+    // Fails stages that run past the timeout
+    private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "service-timeouts");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        TIMEOUTS.setRemoveOnCancelPolicy(true);
+    }
+
+    private ServiceExecutor() {
+    }
+
+    /**
+     * Run work that only reads on the executor
+     * The stage fails with the work's exception, with a ServiceTimeoutException
+     * once the timeout passes, or with a RejectedExecutionException if the
+     * executor no longer takes work
+     *
+     * @param work The work
+     * @param <T> The result type
+     * @return Stage completed with the result
+     */
+    public static <T> CompletionStage<T> supply(Supplier<T> work) {
+        return submit(work, true);
+    }
+
+    /**
+     * Run work that changes data on the executor
+     * The stage completes with the work's outcome, or fails with a
+     * RejectedExecutionException if the executor no longer takes work.
+     * Cancelling the stage only skips the work if it hasn't started
+     *
+     * @param work The work
+     * @param <T> The result type
+     * @return Stage completed with the result
+     */
+    public static <T> CompletableFuture<T> supplyUpdate(Supplier<T> work) {
+        return submit(work, false);
+    }
+
+    private static <T> CompletableFuture<T> submit(Supplier<T> work, boolean interruptible) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (EXECUTOR == null) {
+            run(work, result);
+            return result;
+        }
+
+        Future<?> task;
+        try {
+            task = EXECUTOR.submit(() -> run(work, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (!interruptible) {
+            return result;
+        }
+
+        // Stop the work once nobody is waiting for it
+        ScheduledFuture<?> timeout = TIMEOUT_MILLIS == 0 ? null : TIMEOUTS.schedule(() -> {
+            result.completeExceptionally(new ServiceTimeoutException(TIMEOUT_MILLIS));
+        }, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, failure) -> {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (failure instanceof ServiceTimeoutException || failure instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    // Complete a stage with the outcome of the work, unless it was completed already
+    private static <T> void run(Supplier<T> work, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            result.complete(work.get());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static ExecutorService createExecutor(Mode mode, int threads) {
+        if (mode == Mode.DIRECT) {
+            return null;
+        }
+        if (mode == Mode.VIRTUAL) {
+            // Looked up reflectively so the code still runs on JVMs without virtual threads
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.log(Level.INFO, "Virtual threads are unavailable, using a pool of {0} threads.", threads);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "service-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,176 @@
+package com.bookstore.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel for large numbers of coarse timeouts
+ * Four levels of 64 slots: level 0 holds timeouts due within 64 ticks,
+ * level 1 within 64^2 ticks, and so on. Scheduling and cancelling are O(1)
+ * and never touch the wheel directly; a single ticker thread places new
+ * timeouts, cascades higher levels down as time passes and hands every
+ * timeout expiring on a tick to the handler as one batch
+ *
+ * @param <T> The item carried by a timeout
+ */
+class TimerWheel<T> {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    // Furthest a timeout can be placed; later deadlines are re-placed on cascade
+    private static final long MAX_SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    /**
+     * A scheduled timeout
+     *
+     * @param <T> The item type
+     */
+    static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancel the timeout; it is dropped lazily when its slot comes up
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final Consumer<List<T>> handler;
+
+    // Timeouts scheduled since the last tick, placed by the ticker thread
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+
+    // Only touched by the ticker thread
+    private final List<List<Timeout<T>>> slots = new ArrayList<>(LEVELS * SLOTS);
+    private long currentTick;
+
+    /**
+     * Create the wheel and start its ticker thread
+     *
+     * @param tickMillis The tick length, i.e. the timeout resolution
+     * @param handler Receives the items expiring on each tick, in one call per tick
+     * @param threadName The ticker thread name
+     */
+    TimerWheel(long tickMillis, Consumer<List<T>> handler, String threadName) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.handler = handler;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+
+        Thread ticker = new Thread(this::run, threadName);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Schedule an item to expire after a delay
+     *
+     * @param item The item
+     * @param delayMillis The delay, rounded up to whole ticks
+     * @return The timeout, which can be cancelled
+     */
+    Timeout<T> schedule(T item, long delayMillis) {
+        long elapsed = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        Timeout<T> timeout = new Timeout<>(item, (elapsed + tickNanos - 1) / tickNanos);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // Ticker loop: process every tick that has elapsed, then sleep until the next one
+    private void run() {
+        List<T> expired = new ArrayList<>();
+        while (true) {
+            long now = (System.nanoTime() - startNanos) / tickNanos;
+            while (currentTick < now) {
+                tick(expired);
+                if (!expired.isEmpty()) {
+                    try {
+                        handler.accept(expired);
+                    } catch (RuntimeException e) {
+                        // A failing handler must not stop the wheel
+                    }
+                    expired = new ArrayList<>();
+                }
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(tickNanos);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Advance one tick, collecting the items that expire on it
+    private void tick(List<T> expired) {
+        // Place timeouts scheduled since the last tick
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            place(timeout, expired);
+        }
+
+        currentTick++;
+
+        // Cascade each level whose lower levels just wrapped around, highest first
+        int top = 0;
+        while (top + 1 < LEVELS && (currentTick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level >= 1; level--) {
+            List<Timeout<T>> slot = slot(level, currentTick);
+            List<Timeout<T>> cascaded = new ArrayList<>(slot);
+            slot.clear();
+            for (Timeout<T> entry : cascaded) {
+                place(entry, expired);
+            }
+        }
+
+        // Expire the level 0 slot
+        List<Timeout<T>> due = slot(0, currentTick);
+        for (Timeout<T> entry : due) {
+            if (!entry.cancelled) {
+                expired.add(entry.item);
+            }
+        }
+        due.clear();
+    }
+
+    // Put a timeout in the lowest level whose span covers its deadline
+    private void place(Timeout<T> timeout, List<T> expired) {
+        if (timeout.cancelled) {
+            return;
+        }
+        long delta = timeout.deadline - currentTick;
+        if (delta <= 0) {
+            expired.add(timeout.item);
+            return;
+        }
+        long deadline = delta < MAX_SPAN ? timeout.deadline : currentTick + MAX_SPAN - 1;
+        delta = deadline - currentTick;
+        int level = 0;
+        while (level + 1 < LEVELS && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        slot(level, deadline).add(timeout);
+    }
+
+    private List<Timeout<T>> slot(int level, long tick) {
+        return slots.get(level * SLOTS + (int) ((tick >> (SLOT_BITS * level)) & SLOT_MASK));
+    }
+}
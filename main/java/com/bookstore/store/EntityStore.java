@@ -0,0 +1,170 @@
+package com.bookstore.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Concurrent keyed storage for a single entity type
+ * Backed by a lock-striped ConcurrentHashMap so reads never block and
+ * writes only contend when they land in the same bin
+ *
+ * Consistency guarantees:
+ * - get/put/remove/compute on a single key are atomic and linearizable
+ * - snapshot() and values() are weakly consistent: they never throw
+ *   ConcurrentModificationException and reflect every write completed
+ *   before the call started, but may or may not see concurrent writes
+ *
+ * @param <T> The entity type
+ */
+public class EntityStore<T> {
+    // Default sizing hints for the backing map
+    private static final int DEFAULT_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final ConcurrentMap<Long, T> entries;
+
+    public EntityStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EntityStore(int initialCapacity) {
+        int concurrencyLevel = Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.entries = new ConcurrentHashMap<>(initialCapacity, LOAD_FACTOR, concurrencyLevel);
+    }
+
+    /**
+     * Get an entity by ID
+     *
+     * @param id The entity ID
+     * @return The entity, or null if absent
+     */
+    public T get(Long id) {
+        return id == null ? null : entries.get(id);
+    }
+
+    /**
+     * Check whether an entity exists
+     *
+     * @param id The entity ID
+     * @return true if present
+     */
+    public boolean contains(Long id) {
+        return id != null && entries.containsKey(id);
+    }
+
+    /**
+     * Store an entity, replacing any previous value
+     *
+     * @param id The entity ID
+     * @param entity The entity
+     * @return The previous entity, or null
+     */
+    public T put(Long id, T entity) {
+        return entries.put(id, entity);
+    }
+
+    /**
+     * Store an entity only if the ID is not already taken
+     *
+     * @param id The entity ID
+     * @param entity The entity
+     * @return The existing entity, or null if the entity was stored
+     */
+    public T putIfAbsent(Long id, T entity) {
+        return entries.putIfAbsent(id, entity);
+    }
+
+    /**
+     * Remove an entity
+     *
+     * @param id The entity ID
+     * @return The removed entity, or null
+     */
+    public T remove(Long id) {
+        return id == null ? null : entries.remove(id);
+    }
+
+    /**
+     * Remove an entity only if it is still mapped to the given value
+     *
+     * @param id The entity ID
+     * @param entity The expected entity
+     * @return true if removed
+     */
+    public boolean remove(Long id, T entity) {
+        return entries.remove(id, entity);
+    }
+
+    /**
+     * Get an entity, creating it atomically if absent
+     *
+     * @param id The entity ID
+     * @param factory Creates the entity when absent
+     * @return The existing or newly created entity
+     */
+    public T computeIfAbsent(Long id, Function<Long, T> factory) {
+        return entries.computeIfAbsent(id, factory);
+    }
+
+    /**
+     * Atomically recompute the entity for a key
+     * The remapping function runs while the key's bin is locked, so it must be short
+     *
+     * @param id The entity ID
+     * @param remapping Receives the ID and current entity (or null), returns the new entity (or null to remove)
+     * @return The new entity, or null
+     */
+    public T compute(Long id, BiFunction<Long, T, T> remapping) {
+        return entries.compute(id, remapping);
+    }
+
+    /**
+     * Atomically recompute the entity for a key if it is present
+     *
+     * @param id The entity ID
+     * @param remapping Receives the ID and current entity, returns the new entity (or null to remove)
+     * @return The new entity, or null if absent or removed
+     */
+    public T computeIfPresent(Long id, BiFunction<Long, T, T> remapping) {
+        return entries.computeIfPresent(id, remapping);
+    }
+
+    /**
+     * Weakly consistent live view of the stored entities
+     *
+     * @return Collection view of the entities
+     */
+    public Collection<T> values() {
+        return entries.values();
+    }
+
+    /**
+     * Copy the stored entities into a new list
+     *
+     * @return List of entities
+     */
+    public List<T> snapshot() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * Get the number of stored entities
+     *
+     * @return Entity count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove every entity
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,80 @@
+package com.bookstore.store;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent secondary index mapping a key to the IDs of every entity carrying it
+ * Used for one-to-many lookups such as author to books, so queries cost
+ * time proportional to the number of matches instead of a full scan
+ *
+ * @param <K> The indexed key type
+ */
+public class MultiValueIndex<K> {
+    private final ConcurrentMap<K, Set<Long>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Add an entity ID under a key
+     *
+     * @param key The indexed key
+     * @param id The entity ID
+     */
+    public void add(K key, Long id) {
+        if (key == null) {
+            return;
+        }
+        // Added inside the key's atomic section, so a concurrent remove can't drop the set in between
+        entries.compute(key, (k, ids) -> {
+            Set<Long> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            target.add(id);
+            return target;
+        });
+    }
+
+    /**
+     * Remove an entity ID from a key, dropping the key once it has no IDs left
+     *
+     * @param key The indexed key
+     * @param id The entity ID
+     */
+    public void remove(K key, Long id) {
+        if (key == null) {
+            return;
+        }
+        entries.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Get the IDs stored under a key
+     *
+     * @param key The indexed key
+     * @return Unmodifiable, weakly consistent view of the IDs (empty if none)
+     */
+    public Set<Long> get(K key) {
+        Set<Long> ids = key == null ? null : entries.get(key);
+        return ids == null ? Collections.emptySet() : Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Check whether any entity is stored under a key
+     *
+     * @param key The indexed key
+     * @return true if at least one ID is indexed
+     */
+    public boolean containsKey(K key) {
+        Set<Long> ids = key == null ? null : entries.get(key);
+        return ids != null && !ids.isEmpty();
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,147 @@
+package com.bookstore.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Entity store that can also be traversed in ID order
+ * The hash map stays the source of truth and keeps its atomic per-key
+ * compute; every write mirrors the entry into a lock-free skip list while
+ * the key is locked, which supports keyset pagination (everything after a
+ * given ID) without sorting or copying the whole collection
+ *
+ * @param <T> The entity type
+ */
+public class OrderedEntityStore<T> extends EntityStore<T> {
+    private final ConcurrentNavigableMap<Long, T> ordered = new ConcurrentSkipListMap<>();
+
+    public OrderedEntityStore() {
+        super();
+    }
+
+    public OrderedEntityStore(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    @Override
+    public T put(Long id, T entity) {
+        Object[] previous = new Object[1];
+        compute(id, (key, existing) -> {
+            previous[0] = existing;
+            return entity;
+        });
+        return cast(previous[0]);
+    }
+
+    @Override
+    public T putIfAbsent(Long id, T entity) {
+        Object[] previous = new Object[1];
+        compute(id, (key, existing) -> {
+            previous[0] = existing;
+            return existing != null ? existing : entity;
+        });
+        return cast(previous[0]);
+    }
+
+    @Override
+    public T remove(Long id) {
+        if (id == null) {
+            return null;
+        }
+        Object[] previous = new Object[1];
+        computeIfPresent(id, (key, existing) -> {
+            previous[0] = existing;
+            return null;
+        });
+        return cast(previous[0]);
+    }
+
+    @Override
+    public boolean remove(Long id, T entity) {
+        boolean[] removed = new boolean[1];
+        computeIfPresent(id, (key, existing) -> {
+            removed[0] = existing == entity || existing.equals(entity);
+            return removed[0] ? null : existing;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public T computeIfAbsent(Long id, Function<Long, T> factory) {
+        return compute(id, (key, existing) -> existing != null ? existing : factory.apply(key));
+    }
+
+    @Override
+    public T compute(Long id, BiFunction<Long, T, T> remapping) {
+        return super.compute(id, (key, existing) -> mirror(key, remapping.apply(key, existing)));
+    }
+
+    @Override
+    public T computeIfPresent(Long id, BiFunction<Long, T, T> remapping) {
+        return super.computeIfPresent(id, (key, existing) -> mirror(key, remapping.apply(key, existing)));
+    }
+
+    @Override
+    public Collection<T> values() {
+        return ordered.values();
+    }
+
+    @Override
+    public List<T> snapshot() {
+        return new ArrayList<>(ordered.values());
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        ordered.clear();
+    }
+
+    /**
+     * Weakly consistent live view of the entities with an ID greater than the given one
+     *
+     * @param afterId The exclusive lower bound, or null to start from the first entity
+     * @return Collection view of the entities in ID order
+     */
+    public Collection<T> valuesAfter(Long afterId) {
+        return afterId == null ? ordered.values() : ordered.tailMap(afterId, false).values();
+    }
+
+    /**
+     * Copy one page of entities in ID order
+     *
+     * @param afterId The exclusive lower bound, or null to start from the first entity
+     * @param limit The maximum number of entities to return
+     * @return List of at most limit entities
+     */
+    public List<T> page(Long afterId, int limit) {
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        for (T entity : valuesAfter(afterId)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(entity);
+        }
+        return page;
+    }
+
+    // Mirror a new value into the ordered view; runs while the key is locked in the hash map
+    private T mirror(Long id, T entity) {
+        if (entity == null) {
+            ordered.remove(id);
+        } else {
+            ordered.put(id, entity);
+        }
+        return entity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
@@ -0,0 +1,130 @@
+package com.bookstore.store;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Concurrent secondary index keeping entity IDs sorted by a key
+ * Entries are (key, ID) pairs in a lock-free skip list, so range queries
+ * and ordered pages walk only the entries they return instead of sorting
+ * the whole collection; equal keys are ordered by ID
+ *
+ * @param <K> The indexed key type
+ */
+public class SortedIndex<K extends Comparable<? super K>> {
+    private final ConcurrentSkipListSet<Entry<K>> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Add an entity ID under a key
+     *
+     * @param key The indexed key
+     * @param id The entity ID
+     */
+    public void add(K key, Long id) {
+        if (key != null) {
+            entries.add(new Entry<>(key, id));
+        }
+    }
+
+    /**
+     * Remove an entity ID from a key
+     *
+     * @param key The indexed key
+     * @param id The entity ID
+     */
+    public void remove(K key, Long id) {
+        if (key != null) {
+            entries.remove(new Entry<>(key, id));
+        }
+    }
+
+    /**
+     * Get the entries with keys in a range, in key then ID order
+     *
+     * @param from The smallest key to include, or null for no lower bound
+     * @param to The largest key to include, or null for no upper bound
+     * @param afterKey Only entries after this position are included, or null to start at the range start
+     * @param afterId The ID of the position; required with afterKey
+     * @return Weakly consistent view of the matching entries
+     */
+    public NavigableSet<Entry<K>> range(K from, K to, K afterKey, Long afterId) {
+        // Lower bound: the range start or the position, whichever is later
+        Entry<K> low = from == null ? null : new Entry<>(from, Long.MIN_VALUE);
+        boolean lowInclusive = true;
+        if (afterKey != null) {
+            Entry<K> after = new Entry<>(afterKey, afterId);
+            if (low == null || after.compareTo(low) >= 0) {
+                low = after;
+                lowInclusive = false;
+            }
+        }
+        Entry<K> high = to == null ? null : new Entry<>(to, Long.MAX_VALUE);
+
+        if (low != null && high != null) {
+            // A lower bound past the upper one is an empty range, not an error
+            if (low.compareTo(high) > 0) {
+                return Collections.emptyNavigableSet();
+            }
+            return entries.subSet(low, lowInclusive, high, true);
+        }
+        if (low != null) {
+            return entries.tailSet(low, lowInclusive);
+        }
+        if (high != null) {
+            return entries.headSet(high, true);
+        }
+        return entries;
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * One (key, ID) pair of the index
+     *
+     * @param <K> The indexed key type
+     */
+    public static final class Entry<K extends Comparable<? super K>> implements Comparable<Entry<K>> {
+        private final K key;
+        private final Long id;
+
+        Entry(K key, Long id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            int byKey = key.compareTo(other.key);
+            return byKey != 0 ? byKey : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            Entry<?> entry = (Entry<?>) other;
+            return key.equals(entry.key) && id.equals(entry.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, id);
+        }
+    }
+}
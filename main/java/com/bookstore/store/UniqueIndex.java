@@ -0,0 +1,55 @@
+package com.bookstore.store;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent unique secondary index mapping a key to exactly one entity ID
+ * Claiming a key is atomic, so two concurrent writers can never both take it
+ *
+ * @param <K> The indexed key type
+ */
+public class UniqueIndex<K> {
+    private final ConcurrentMap<K, Long> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Claim a key for an entity ID
+     *
+     * @param key The indexed key
+     * @param id The entity ID
+     * @return true if the key is now held by the ID (including if it already was)
+     */
+    public boolean claim(K key, Long id) {
+        Long owner = entries.putIfAbsent(key, id);
+        return owner == null || owner.equals(id);
+    }
+
+    /**
+     * Release a key, but only if it is still held by the given ID
+     *
+     * @param key The indexed key
+     * @param id The entity ID
+     */
+    public void release(K key, Long id) {
+        if (key != null) {
+            entries.remove(key, id);
+        }
+    }
+
+    /**
+     * Get the entity ID holding a key
+     *
+     * @param key The indexed key
+     * @return The entity ID, or null if the key is free
+     */
+    public Long get(K key) {
+        return key == null ? null : entries.get(key);
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void clear() {
+        entries.clear();
+    }
+}
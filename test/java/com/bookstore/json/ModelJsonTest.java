@@ -0,0 +1,136 @@
+package com.bookstore.json;
+
+import com.bookstore.model.Author;
+import com.bookstore.model.Book;
+import com.bookstore.model.Cart;
+import com.bookstore.model.CartItem;
+import com.bookstore.model.Customer;
+import com.bookstore.model.ErrorResponse;
+import com.bookstore.model.Order;
+import com.bookstore.model.OrderItem;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hand-written encoders against what the default JSON binding (JSON-B,
+ * Yasson) writes for the same models
+ */
+class ModelJsonTest {
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Test
+    void book() throws IOException {
+        assertEquals("{\"authorId\":2,\"id\":1,\"isbn\":\"978-0\",\"price\":15.99,\"publicationYear\":1997,"
+                        + "\"stock\":3,\"title\":\"Philosopher's Stone\"}",
+                write(new Book(1L, "Philosopher's Stone", 2L, "978-0", 1997, 15.99, 3)));
+        assertEquals("{\"price\":0.0,\"publicationYear\":0,\"stock\":0}", write(new Book()));
+    }
+
+    @Test
+    void author() throws IOException {
+        assertEquals("{\"biography\":\"British author\",\"id\":2,\"name\":\"J. K. Rowling\"}",
+                write(new Author(2L, "J. K. Rowling", "British author")));
+        assertEquals("{}", write(new Author()));
+    }
+
+    @Test
+    void customer() throws IOException {
+        assertEquals("{\"email\":\"ann@example.com\",\"id\":1,\"name\":\"Ann\",\"password\":\"secret\"}",
+                write(new Customer(1L, "Ann", "ann@example.com", "secret")));
+        assertEquals("{}", write(new Customer()));
+    }
+
+    @Test
+    void cart() throws IOException {
+        Cart cart = new Cart(1L);
+        cart.addItem(new CartItem(4L, 2));
+        assertEquals("{\"customerId\":1,\"items\":[{\"bookId\":4,\"quantity\":2}]}", write(cart));
+        assertEquals("{\"customerId\":1,\"items\":[]}", write(new Cart(1L)));
+    }
+
+    @Test
+    void cartItem() throws IOException {
+        assertEquals("{\"bookId\":4,\"quantity\":2}", write(new CartItem(4L, 2)));
+        assertEquals("{\"quantity\":0}", write(new CartItem()));
+    }
+
+    @Test
+    void order() throws IOException {
+        Order order = new Order(7L, 1L, new ArrayList<>(Collections.singletonList(
+                new OrderItem(4L, "Philosopher's Stone", 2, 15.99))), 31.98);
+        order.setOrderDate(new Date(1700000000306L));
+        assertEquals("{\"customerId\":1,\"id\":7,\"items\":[{\"bookId\":4,\"bookTitle\":\"Philosopher's Stone\","
+                        + "\"price\":15.99,\"quantity\":2,\"totalPrice\":31.98}],"
+                        + "\"orderDate\":\"2023-11-14T22:13:20.306Z[UTC]\",\"totalAmount\":31.98}",
+                write(order));
+    }
+
+    @Test
+    void orderDateDropsTrailingZeros() throws IOException {
+        Order order = new Order();
+        order.setOrderDate(new Date(1700000000300L));
+        assertEquals("{\"items\":[],\"orderDate\":\"2023-11-14T22:13:20.3Z[UTC]\",\"totalAmount\":0.0}", write(order));
+        order.setOrderDate(new Date(1700000000000L));
+        assertEquals("{\"items\":[],\"orderDate\":\"2023-11-14T22:13:20Z[UTC]\",\"totalAmount\":0.0}", write(order));
+        order.setOrderDate(null);
+        assertEquals("{\"items\":[],\"totalAmount\":0.0}", write(order));
+    }
+
+    @Test
+    void orderItem() throws IOException {
+        assertEquals("{\"bookId\":1,\"bookTitle\":\"A\",\"price\":0.1,\"quantity\":3,\"totalPrice\":0.30000000000000004}",
+                write(new OrderItem(1L, "A", 3, 0.1)));
+        assertEquals("{\"price\":0.0,\"quantity\":0,\"totalPrice\":0.0}", write(new OrderItem()));
+    }
+
+    @Test
+    void errorResponse() throws IOException {
+        assertEquals("{\"error\":\"Not Found\",\"message\":\"Book 9 \\\"x\\\"\\n\\u0001\"}",
+                write(new ErrorResponse("Not Found", "Book 9 \"x\"\n\u0001")));
+        assertEquals("{}", write(new ErrorResponse()));
+    }
+
+    @Test
+    void nonAsciiIsWrittenRaw() throws IOException {
+        assertEquals("{\"name\":\"G\u00fcnter \u4e66\"}", write(new Author(null, "G\u00fcnter \u4e66", null)));
+    }
+
+    @Test
+    void claimsOnlyModelsAndTheirTypedCollections() {
+        ModelJsonProvider provider = new ModelJsonProvider();
+        List<Book> books = Arrays.asList(new Book());
+        GenericEntity<List<Book>> typed = new GenericEntity<List<Book>>(books) { };
+        GenericEntity<List<String>> strings = new GenericEntity<List<String>>(Arrays.asList("a")) { };
+
+        assertTrue(isWriteable(provider, Book.class, Book.class));
+        assertTrue(isWriteable(provider, typed.getRawType(), typed.getType()));
+        assertFalse(isWriteable(provider, books.getClass(), books.getClass()));
+        assertFalse(isWriteable(provider, strings.getRawType(), strings.getType()));
+        assertFalse(isWriteable(provider, String.class, String.class));
+    }
+
+    private static boolean isWriteable(ModelJsonProvider provider, Class<?> type, Type genericType) {
+        return provider.isWriteable(type, genericType, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE);
+    }
+
+    private static String write(Object entity) throws IOException {
+        StringWriter out = new StringWriter();
+        ModelJsonProvider.write(new JsonWriter(out), entity);
+        return out.toString();
+    }
+}
@@ -0,0 +1,188 @@
+package com.bookstore.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Journal behaviour when the disk fails under it
+ */
+class JournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void failedFlushStopsTheJournal() throws IOException {
+        // Create the first segment, then reopen it through a channel that can be made to fail
+        Journal.open(directory, Journal.SyncPolicy.GROUP, 0).close();
+        FailingChannel channel = new FailingChannel(FileChannel.open(directory.resolve("journal-0000000001.log"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        channel.position(channel.size());
+        Journal journal = new Journal(directory, Journal.SyncPolicy.GROUP, 0, 1, channel);
+
+        journal.sync(journal.append(RecordType.DELETE_BOOK, out -> out.writeLong(1)));
+
+        channel.failing = true;
+        long lost = journal.append(RecordType.DELETE_BOOK, out -> out.writeLong(2));
+        assertThrows(UncheckedIOException.class, () -> journal.sync(lost));
+
+        // The disk is back, but nothing may be acknowledged after the lost record
+        channel.failing = false;
+        assertThrows(UncheckedIOException.class, () -> journal.append(RecordType.DELETE_BOOK, out -> out.writeLong(3)));
+        assertThrows(UncheckedIOException.class, () -> journal.sync(1));
+        assertThrows(UncheckedIOException.class, () -> journal.sync(lost));
+        assertThrows(UncheckedIOException.class, journal::flushAll);
+        assertThrows(UncheckedIOException.class, journal::rotate);
+        journal.close();
+
+        List<Long> replayed = new ArrayList<>();
+        try (Journal reopened = Journal.open(directory, Journal.SyncPolicy.GROUP, 0)) {
+            reopened.replay(1, (type, in) -> replayed.add(in.readLong()));
+        }
+        assertEquals(List.of(1L), replayed);
+    }
+
+    @Test
+    void failedFlushStopsAPerOpJournal() throws IOException {
+        Journal.open(directory, Journal.SyncPolicy.PER_OP, 0).close();
+        FailingChannel channel = new FailingChannel(FileChannel.open(directory.resolve("journal-0000000001.log"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        channel.position(channel.size());
+        Journal journal = new Journal(directory, Journal.SyncPolicy.PER_OP, 0, 1, channel);
+
+        channel.failing = true;
+        assertThrows(UncheckedIOException.class, () -> journal.append(RecordType.DELETE_BOOK, out -> out.writeLong(1)));
+        channel.failing = false;
+        assertThrows(UncheckedIOException.class, () -> journal.append(RecordType.DELETE_BOOK, out -> out.writeLong(2)));
+        journal.close();
+
+        try (Journal reopened = Journal.open(directory, Journal.SyncPolicy.PER_OP, 0)) {
+            assertEquals(0, reopened.replay(1, (type, in) -> { }));
+        }
+    }
+
+    /**
+     * File channel whose writes and forces fail while failing is set
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean failing;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        private void check() throws IOException {
+            if (failing) {
+                throw new IOException("Disk failure");
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            check();
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            check();
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            check();
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            check();
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            check();
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
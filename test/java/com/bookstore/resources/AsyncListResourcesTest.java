@@ -0,0 +1,105 @@
+package com.bookstore.resources;
+
+import com.bookstore.ApplicationConfig;
+import com.bookstore.json.ModelCborProvider;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpHandlerRegistration;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.ws.rs.ext.RuntimeDelegate;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every asynchronous endpoint that answers with a list, served by Jersey on
+ * Grizzly, for each kind of Accept header a client sends
+ */
+class AsyncListResourcesTest {
+    private static final String[] PATHS = {
+            "/books",
+            "/books?limit=2",
+            "/books?stream=true",
+            "/books?sort=price",
+            "/books/search?q=potter",
+            "/customers/1/orders"
+    };
+
+    private static HttpServer server;
+    private static String baseUri;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void start() throws Exception {
+        System.setProperty("bookstore.data.dir", "");
+        NetworkListener listener = new NetworkListener("test", InetAddress.getLoopbackAddress().getHostAddress(), 0);
+        server = new HttpServer();
+        server.addListener(listener);
+        server.getServerConfiguration().addHttpHandler(
+                RuntimeDelegate.getInstance().createEndpoint(new ApplicationConfig(), HttpHandler.class),
+                HttpHandlerRegistration.builder().contextPath("/api").build());
+        server.start();
+        baseUri = "http://" + listener.getHost() + ":" + listener.getPort() + "/api";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        // Give the customer an order, so the order list isn't empty
+        assertEquals(200, send(post("/customers/1/cart/items", "{\"bookId\":1,\"quantity\":1}")).statusCode());
+        assertEquals(201, send(post("/customers/1/orders", "")).statusCode());
+    }
+
+    @AfterAll
+    static void stop() {
+        server.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"application/json", "*/*"})
+    void listsAreWrittenAsJson(String accept) throws Exception {
+        for (String path : PATHS) {
+            HttpResponse<byte[]> response = send(get(path, accept));
+            assertEquals(200, response.statusCode(), path);
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/json"), path);
+            String body = new String(response.body(), StandardCharsets.UTF_8);
+            assertTrue(body.startsWith("[{\""), path + ": " + body);
+        }
+    }
+
+    @Test
+    void listsAreWrittenAsCbor() throws Exception {
+        for (String path : PATHS) {
+            HttpResponse<byte[]> response = send(get(path, ModelCborProvider.APPLICATION_CBOR));
+            assertEquals(200, response.statusCode(), path);
+            assertEquals(ModelCborProvider.APPLICATION_CBOR, response.headers().firstValue("Content-Type").orElse(""), path);
+            // A CBOR array: major type 4
+            assertEquals(4, (response.body()[0] & 0xff) >> 5, path);
+        }
+    }
+
+    private static HttpRequest get(String path, String accept) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path)).header("Accept", accept).GET().build();
+    }
+
+    private static HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}